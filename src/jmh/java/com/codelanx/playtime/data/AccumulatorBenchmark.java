@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per-minute work of {@link com.codelanx.playtime.runnable.AddRunnable},
+ * which counts a minute for every online player into the
+ * {@link TimeAccumulator}, and the drain the flusher makes of it.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccumulatorBenchmark {
+
+    private static final Timer[] TIMERS = Timer.values();
+
+    @Param({"50", "300", "1000"})
+    private int players;
+    private UUID[] uuids;
+    private String[] names;
+    private TimeAccumulator accumulator;
+
+    @Setup
+    public void setup() {
+        this.uuids = new UUID[this.players];
+        this.names = new String[this.players];
+        for (int i = 0; i < this.players; i++) {
+            this.uuids[i] = UUID.randomUUID();
+            this.names[i] = "player" + i;
+        }
+        this.accumulator = new TimeAccumulator();
+    }
+
+    /**
+     * One run of the add task followed by the flusher's drain
+     */
+    @Benchmark
+    public List<TimeAccumulator.Delta> countMinute() {
+        for (int i = 0; i < this.players; i++) {
+            this.accumulator.increment(this.uuids[i], this.names[i], TIMERS);
+        }
+        return this.accumulator.drain();
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.callable.UUIDFetcher;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares serving a top command from an embedded SQLite database, using the
+ * same statement as {@link com.codelanx.playtime.data.sqlite.Data_SQLite},
+ * with serving it from a {@link Leaderboard}.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopPlayersBenchmark {
+
+    @Param({"1000", "100000"})
+    private int rows;
+    private Connection con;
+    private PreparedStatement top;
+    private Leaderboard board;
+
+    @Setup
+    public void setup() throws SQLException {
+        this.con = DriverManager.getConnection("jdbc:sqlite::memory:");
+        this.con.createStatement().executeUpdate("CREATE TABLE `playTime` (`uuid` BLOB NOT NULL PRIMARY KEY, `username` VARCHAR(32) NOT NULL, `playtime` INTEGER NOT NULL DEFAULT 0, `deathtime` INTEGER NOT NULL DEFAULT 0, `onlinetime` INTEGER NOT NULL DEFAULT 0) WITHOUT ROWID");
+        this.con.createStatement().executeUpdate("CREATE INDEX `playTime_playtime` ON `playTime` (`playtime`)");
+        this.con.setAutoCommit(false);
+        PreparedStatement insert = this.con.prepareStatement(Query.INSERT_USER.getSQL());
+        Random random = new Random(0);
+        for (int i = 0; i < this.rows; i++) {
+            PooledConnection.bind(insert, "player" + i, UUID.randomUUID(),
+                    random.nextInt(100000), random.nextInt(100000), random.nextInt(100000));
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        this.con.commit();
+        this.con.setAutoCommit(true);
+        this.top = this.con.prepareStatement(Query.SELECT_TOP.getSQL(Timer.PLAYTIME));
+
+        this.board = new Leaderboard(Timer.PLAYTIME, 50);
+        List<Leaderboard.Entry> entries = new ArrayList<Leaderboard.Entry>();
+        ResultSet rs = PooledConnection.bind(this.con.prepareStatement(Query.SELECT_TOP.getSQL(Timer.PLAYTIME)), 50).executeQuery();
+        while (rs.next()) {
+            entries.add(new Leaderboard.Entry(UUIDFetcher.fromBytes(rs.getBytes(1)), rs.getString(2), rs.getInt(3)));
+        }
+        rs.close();
+        this.board.rebuild(entries);
+    }
+
+    @TearDown
+    public void close() throws SQLException {
+        this.con.close();
+    }
+
+    @Benchmark
+    public Map<String, Integer> database() throws SQLException {
+        Map<String, Integer> players = new LinkedHashMap<String, Integer>();
+        this.top.setInt(1, Leaderboard.MAX_SHOWN);
+        ResultSet rs = this.top.executeQuery();
+        while (rs.next()) {
+            players.put(rs.getString(2), rs.getInt(3));
+        }
+        rs.close();
+        return players;
+    }
+
+    @Benchmark
+    public Map<String, Integer> leaderboard() {
+        return this.board.getTop(Leaderboard.MAX_SHOWN);
+    }
+
+}
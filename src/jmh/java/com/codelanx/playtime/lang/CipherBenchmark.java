@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.lang;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Cipher#getString(String, Object...)} against the bundled
+ * en_US lang file, for a message with no variables and the five variable
+ * message sent by the time commands.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CipherBenchmark {
+
+    private Cipher cipher;
+
+    @Setup
+    public void setup() throws IOException {
+        // a stand-in plugin serving the jar's lang file, with a scratch data folder
+        final File folder = Files.createTempDirectory("playtime-bench").toFile();
+        Plugin plugin = (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[] {Plugin.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getDataFolder")) {
+                    return folder;
+                } else if (method.getName().equals("getResource")) {
+                    return CipherBenchmark.class.getResourceAsStream("/" + args[0]);
+                } else if (method.getName().equals("getLogger")) {
+                    return Logger.getLogger(CipherBenchmark.class.getName());
+                }
+                return null;
+            }
+        });
+        this.cipher = new Cipher(plugin, "en_US", false);
+    }
+
+    @Benchmark
+    public String plain() {
+        return this.cipher.getString("command.commands.pt.datainuse");
+    }
+
+    @Benchmark
+    public String formatted() {
+        return this.cipher.getString("command.commands.play.playtime-hours", "1Rogue", 12, "s", 34, "s");
+    }
+
+}
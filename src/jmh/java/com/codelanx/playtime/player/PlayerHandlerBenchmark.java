@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.player;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link PlayerHandler#activity(UUID)} with move events arriving for
+ * 300 players from several threads at once, along with the deadline sweep the
+ * AFK task makes alongside them.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerHandlerBenchmark {
+
+    private static final int PLAYERS = 300;
+    private final UUID[] uuids = new UUID[PLAYERS];
+    private PlayerHandler handler;
+
+    @Setup
+    public void setup() {
+        // the plugin is only used for debug output on AFK changes
+        this.handler = new PlayerHandler(null, 60, 300);
+        for (int i = 0; i < PLAYERS; i++) {
+            this.uuids[i] = UUID.randomUUID();
+            this.handler.putPlayer(this.uuids[i], "player" + i);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void moveSingleThread() {
+        this.handler.activity(this.uuids[ThreadLocalRandom.current().nextInt(PLAYERS)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void moveContended() {
+        this.handler.activity(this.uuids[ThreadLocalRandom.current().nextInt(PLAYERS)]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void checkDeadlines() {
+        this.handler.checkDeadlines();
+    }
+
+}
@@ -21,14 +21,20 @@ import com.codelanx.playtime.config.ConfigurationLoader;
 import com.codelanx.playtime.data.DataManager;
 import com.codelanx.playtime.event.EventHandler;
 import com.codelanx.playtime.executables.ExecutiveManager;
+import com.codelanx.playtime.executables.StartupPipeline;
 import com.codelanx.playtime.lang.Cipher;
 import com.codelanx.playtime.listener.ListenerManager;
 import com.codelanx.playtime.metrics.Metrics;
+import com.codelanx.playtime.player.NameCache;
 import com.codelanx.playtime.player.PlayerHandler;
 import com.codelanx.playtime.runnable.AFKRunnable;
 import com.codelanx.playtime.update.Choice;
 import com.codelanx.playtime.update.UpdateHandler;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -53,21 +59,24 @@ public class Playtime extends JavaPlugin {
     protected ExecutiveManager execmanager;
     protected ListenerManager listener;
     protected PlayerHandler phandler;
+    protected NameCache ncache;
     protected CommandHandler chandler;
     protected DataManager dmanager;
     protected ConfigurationLoader cloader;
     protected EventHandler ehandler;
     protected Cipher lang;
     protected UpdateHandler updater;
+    protected ScheduledFuture<?> afktask;
     private boolean isUpdate = false;
     private boolean isBusy = true;
     private boolean reloaded = false;
 
     /**
-     * Registers the plugin configuration file and language system.
+     * Registers the plugin configuration file. The language system is loaded
+     * in {@link #onEnable()}, alongside the other startup stages.
      *
      * @since 1.0
-     * @version 1.3.0
+     * @version 2.0.0
      */
     @Override
     public void onLoad() {
@@ -75,25 +84,16 @@ public class Playtime extends JavaPlugin {
         this.getLogger().info("Loading Configuration mananger...");
         this.cloader = new ConfigurationLoader(this);
 
-        try {
-            Thread.sleep(500L);
-        } catch (InterruptedException ex) {
-            Logger.getLogger(Playtime.class.getName()).log(Level.SEVERE, null, ex);
-        }
-
-        this.getLogger().info("Loading language manager...");
-
-        this.lang = new Cipher(this,
-                this.cloader.getString("language.locale"),
-                this.cloader.getBoolean("language.use-github"));
-
     }
 
     /**
      * Registers debug, metrics, commands, data management, and listeners.
+     * Stages that do not touch the server are run alongside each other as
+     * soon as the stages they need are done, and the rest are run on the
+     * server thread once they have all finished.
      *
      * @since 1.0
-     * @version 1.5.0
+     * @version 2.0.0
      */
     @Override
     public void onEnable() {
@@ -103,6 +103,139 @@ public class Playtime extends JavaPlugin {
             this.reloaded = true;
         }
 
+        this.loadDebugLevel();
+        this.dmanager = new DataManager(this, false);
+
+        StartupPipeline startup = new StartupPipeline(this);
+        startup.stage("lang", new Runnable() {
+            public void run() {
+                getLogger().info("Loading language manager...");
+                lang = new Cipher(Playtime.this,
+                        cloader.getString("language.locale"),
+                        cloader.getBoolean("language.use-github"));
+                if (debug >= 1) {
+                    getLogger().info(lang.getString("main.debug", debug));
+                }
+            }
+        });
+        startup.stage("names", new Runnable() {
+            public void run() {
+                ncache = new NameCache(Playtime.this);
+                ncache.load();
+            }
+        });
+        startup.stage("metrics", new Runnable() {
+            public void run() {
+                try {
+                    Metrics metrics = new Metrics(Playtime.this);
+                    getLogger().info(lang.getString("main.metrics"));
+                    metrics.start();
+                } catch (IOException ex) {
+                    Logger.getLogger(Playtime.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        }, "lang");
+        startup.stage("update", new Runnable() {
+            public void run() {
+                boolean check = cloader.getBoolean("update.check");
+                boolean dl = cloader.getBoolean("update.download");
+                updater = new UpdateHandler(Playtime.this, Choice.getChoice(check, dl), ID, getFile().getName());
+                updater.setDebug(debug);
+                updater.runCheck();
+            }
+        }, "lang");
+        startup.stage("data", new Runnable() {
+            public void run() {
+                getLogger().info(lang.getString("main.data"));
+                dmanager.select(cloader.getString("data.manager"));
+                if (!dmanager.setup()) {
+                    throw new IllegalStateException("The " + dmanager.getDataHandler().getName() + " database could not be set up");
+                }
+            }
+        }, "lang");
+        if (!startup.await()) {
+            if (this.isEnabled()) {
+                this.getServer().getPluginManager().disablePlugin(this);
+            }
+            return;
+        }
+        if (!this.isEnabled()) {
+            //a stage disabled the plugin itself
+            return;
+        }
+
+        startup.run("tasks", new Runnable() {
+            public void run() {
+                getLogger().info(lang.getString("main.execs"));
+                execmanager = new ExecutiveManager(Playtime.this);
+                dmanager.start();
+            }
+        });
+
+        startup.run("players", new Runnable() {
+            public void run() {
+                loadPlayerHandler();
+            }
+        });
+
+        startup.run("commands", new Runnable() {
+            public void run() {
+                getLogger().info(lang.getString("main.command"));
+                chandler = new CommandHandler(Playtime.this);
+            }
+        });
+
+        startup.run("listeners", new Runnable() {
+            public void run() {
+                if (cloader.getBoolean("events.enabled")) {
+                    getLogger().info(lang.getString("main.event"));
+                    ehandler = new EventHandler(Playtime.this);
+                } else {
+                    getLogger().info(lang.getString("main.event-disabled"));
+                }
+                getLogger().info(lang.getString("main.listener"));
+                listener = new ListenerManager(Playtime.this);
+            }
+        });
+
+        final long endTime = System.nanoTime();
+        this.setBusy(false);
+        if (this.debug >= 1) {
+            startup.report();
+            final long duration = endTime - startTime;
+            this.getLogger().info(this.lang.getString("main.enabled", this.readableProfile(duration)));
+        }
+    }
+
+    /**
+     * Closes tasks and sql connections on plugin disabling. Anything a failed
+     * startup did not get to is skipped.
+     *
+     * @since 1.0
+     * @version 2.0.0
+     */
+    @Override
+    public void onDisable() {
+        if (this.execmanager != null) {
+            this.execmanager.cancelAllTasks();
+        }
+        HandlerList.unregisterAll(this);
+        if (this.dmanager != null && this.dmanager.getDataHandler() != null) {
+            this.dmanager.flush();
+            this.dmanager.getDataHandler().cleanup();
+        }
+        if (this.ncache != null) {
+            this.ncache.save();
+        }
+    }
+
+    /**
+     * Reads the debug level from the configuration
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    private void loadDebugLevel() {
         int temp = this.cloader.getInt("general.debug-level");
         if (temp > 3) {
             temp = 3;
@@ -111,91 +244,139 @@ public class Playtime extends JavaPlugin {
             temp = 0;
         }
         this.debug = Byte.parseByte(temp + "");
-        if (this.debug >= 1) {
-            this.getLogger().info(this.lang.getString("main.debug", this.debug));
-        }
+    }
 
-        try {
-            Metrics metrics = new Metrics(this);
-            getLogger().info(this.lang.getString("main.metrics"));
-            metrics.start();
-        } catch (IOException ex) {
-            Logger.getLogger(Playtime.class.getName()).log(Level.SEVERE, null, ex);
+    /**
+     * Sets up AFK checking as the configuration asks. Players tracked by a
+     * previous handler are carried over, and anyone online is tracked if
+     * there was none.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    private void loadPlayerHandler() {
+        if (this.afktask != null) {
+            this.afktask.cancel(false);
+            this.afktask = null;
         }
-
-        this.getLogger().info(this.lang.getString("main.execs"));
-        this.execmanager = new ExecutiveManager(this);
-
+        PlayerHandler previous = this.phandler;
         if (this.cloader.getBoolean("afk.enabled")) {
             this.getLogger().info(this.lang.getString("main.player"));
             this.phandler = new PlayerHandler(this, this.cloader.getInt("afk.interval"), this.cloader.getInt("afk.timeout"));
-            this.execmanager.runAsyncTaskRepeat(new AFKRunnable(this), this.phandler.getAFKCheckInterval(), this.phandler.getAFKCheckInterval());
+            if (previous != null) {
+                this.phandler.adopt(previous);
+            } else {
+                for (Player p : Bukkit.getOnlinePlayers()) {
+                    this.phandler.putPlayer(p.getUniqueId(), p.getName());
+                }
+            }
+            this.afktask = this.execmanager.runAsyncTaskRepeat(new AFKRunnable(this), this.phandler.getAFKCheckInterval(), this.phandler.getAFKCheckInterval());
         } else {
             this.getLogger().info(this.lang.getString("main.afk"));
             this.phandler = null;
         }
+    }
 
-        boolean check = this.cloader.getBoolean("update.check");
-        boolean dl = this.cloader.getBoolean("update.download");
-        this.updater = new UpdateHandler(this, Choice.getChoice(check, dl), this.ID, this.getFile().getName());
-        this.updater.setDebug(this.debug);
-        this.updater.runCheck();
-
-        this.getLogger().info(this.lang.getString("main.data"));
-        this.dmanager = new DataManager(this, true);
-
-        this.getLogger().info(this.lang.getString("main.command"));
-        this.chandler = new CommandHandler(this);
-
-        boolean deathEnabled = this.cloader.getBoolean("check.death-time");
-        boolean onlineEnabled = this.cloader.getBoolean("check.online-time");
-
-        if (this.cloader.getBoolean("events.enabled")) {
-            this.getLogger().info(this.lang.getString("main.event"));
-            this.getLogger().warning("Events forcibly disabled! They will return in the next update");
-            //this.ehandler = new EventHandler(this);
+    /**
+     * Reloads the plugin. The configuration and events files are compared
+     * with the settings in use, and only the parts whose settings changed are
+     * rebuilt, so database connections, caches and counted minutes are kept.
+     * A change to the storage or executor settings needs a full
+     * {@link #restart(String...)} instead.
+     *
+     * @since 1.4.0
+     * @version 2.0.0
+     *
+     * @param names Players to notify when the reload is complete
+     */
+    public void reload(String... names) {
+        ConfigurationLoader fresh = new ConfigurationLoader(this);
+        Set<String> changed = ConfigurationLoader.diff(this.cloader.getConfig(), fresh.getConfig());
+        if (Playtime.anyChanged(changed, "data.", "managers.", "executors.")) {
+            this.getLogger().info(this.lang.getString("main.reload-restart"));
+            this.restart(names);
+            return;
+        }
+        this.cloader = fresh;
+        List<String> rebuilt = new ArrayList<String>();
+        boolean listeners = false;
+        if (Playtime.anyChanged(changed, "general.debug-level")) {
+            this.loadDebugLevel();
+            this.updater.setDebug(this.debug);
+            rebuilt.add("debug");
+        }
+        if (Playtime.anyChanged(changed, "language.")) {
+            this.lang = new Cipher(this,
+                    this.cloader.getString("language.locale"),
+                    this.cloader.getBoolean("language.use-github"));
+            rebuilt.add("language");
+        }
+        if (Playtime.anyChanged(changed, "afk.")) {
+            this.loadPlayerHandler();
+            listeners = true;
+            rebuilt.add("afk");
+        }
+        if (Playtime.anyChanged(changed, "events.dispatch-budget")) {
+            this.execmanager.getDispatchQueue().setBudget(this.cloader.getInt("events.dispatch-budget"));
+            rebuilt.add("dispatch");
+        }
+        boolean events = this.cloader.getBoolean("events.enabled");
+        if (events != (this.ehandler != null) || (events && this.ehandler.isStale())) {
+            this.getLogger().info(this.lang.getString(events ? "main.event" : "main.event-disabled"));
+            this.ehandler = events ? new EventHandler(this) : null;
+            listeners = true;
+            rebuilt.add("events");
+        }
+        if (listeners || Playtime.anyChanged(changed, "check.")) {
+            this.listener.reload();
+            rebuilt.add("listeners");
+        }
+        if (rebuilt.isEmpty()) {
+            this.getLogger().info(this.lang.getString("main.reload-none"));
         } else {
-            this.getLogger().info(this.lang.getString("main.event-disabled"));
+            this.getLogger().info(this.lang.getString("main.reload-changed", rebuilt.toString()));
         }
-
-        this.getLogger().info(this.lang.getString("main.listener"));
-        this.listener = new ListenerManager(this);
-
-        final long endTime = System.nanoTime();
-        if (this.reloaded && this.phandler != null) {
-            for (Player p : Bukkit.getOnlinePlayers()) {
-                this.phandler.putPlayer(p.getName(), 0, p.getLocation());
+        String reloadDone = this.lang.getString("main.reloaded");
+        this.getLogger().info(reloadDone);
+        for (String s : names) {
+            Player p = this.getServer().getPlayer(s);
+            if (p != null) {
+                p.sendMessage(__(reloadDone));
             }
         }
-        this.setBusy(false);
-        if (this.debug >= 1) {
-            final long duration = endTime - startTime;
-            this.getLogger().info(this.lang.getString("main.enabled", this.readableProfile(duration)));
-        }
     }
 
     /**
-     * Closes tasks and sql connections on plugin disabling.
+     * Checks whether any changed path falls under one of the given prefixes
      *
-     * @since 1.0
-     * @version 1.3.0
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param changed The changed configuration paths
+     * @param prefixes The paths, or path prefixes, to look for
+     * @return true if any of them changed
      */
-    @Override
-    public void onDisable() {
-        this.execmanager.cancelAllTasks();
-        HandlerList.unregisterAll(this);
-        this.dmanager.getDataHandler().cleanup();
+    private static boolean anyChanged(Set<String> changed, String... prefixes) {
+        for (String path : changed) {
+            for (String prefix : prefixes) {
+                if (path.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
-     * Reloads the plugin
+     * Restarts the plugin from scratch, reconnecting to the database and
+     * reading every file again. Counted minutes are flushed first.
      *
-     * @since 1.4.0
-     * @version 1.4.2
+     * @since 2.0.0
+     * @version 2.0.0
      *
      * @param names Players to notify when the reload is complete
      */
-    public void reload(final String... names) {
+    public void restart(final String... names) {
         final String reloadDone = this.lang.getString("main.reloaded");
         final Playtime plugin = this;
         this.setBusy(true);
@@ -207,6 +388,8 @@ public class Playtime extends JavaPlugin {
                 plugin.execmanager = null;
                 plugin.listener = null;
                 plugin.phandler = null;
+                plugin.afktask = null;
+                plugin.ncache = null;
                 plugin.chandler = null;
                 plugin.dmanager = null;
                 plugin.cloader = null;
@@ -349,6 +532,18 @@ public class Playtime extends JavaPlugin {
         return ChatColor.translateAlternateColorCodes('&', "[&e" + Playtime.getPlugin().getDescription().getName() + "&f] &6" + encoded);
     }
 
+    /**
+     * Returns Playtime's command handler
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The command handler for Playtime
+     */
+    public CommandHandler getCommandHandler() {
+        return this.chandler;
+    }
+
     /**
      * Returns Playtime's abstract data manager
      *
@@ -385,6 +580,18 @@ public class Playtime extends JavaPlugin {
         return this.lang;
     }
 
+    /**
+     * Returns the cache of known player names and uuids
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Playtime's name cache
+     */
+    public NameCache getNameCache() {
+        return this.ncache;
+    }
+
     /**
      * Returns the event system for Playtime
      *
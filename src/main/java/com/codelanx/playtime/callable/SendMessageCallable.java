@@ -19,12 +19,13 @@ package com.codelanx.playtime.callable;
 import static com.codelanx.playtime.Playtime.__;
 import java.util.concurrent.Callable;
 import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 
 /**
  *
  * @since 1.4.0
  * @author 1Rogue
- * @version 1.4.0
+ * @version 2.0.0
  */
 public class SendMessageCallable implements Callable {
 
@@ -37,7 +38,10 @@ public class SendMessageCallable implements Callable {
     }
 
     public Object call() {
-        Bukkit.getPlayer(player).sendMessage(__(message));
+        Player p = Bukkit.getPlayerExact(player);
+        if (p != null) {
+            p.sendMessage(__(message));
+        }
         return null;
     }
 }
@@ -38,12 +38,13 @@ import org.json.simple.parser.JSONParser;
  *
  * @since 1.0.0
  * @author evilmidget38
- * @version 1.0.0
+ * @version 2.0.0
  */
 public class UUIDFetcher implements Callable<Map<String, UUID>> {
-    private static final double PROFILES_PER_REQUEST = 100;
-    private static final String PROFILE_URL = "https://api.mojang.com/profiles/minecraft";
-    private final JSONParser jsonParser = new JSONParser();
+    /** The most names the profile endpoint accepts in one request */
+    public static final int PROFILES_PER_REQUEST = 100;
+    /** Mojang's name to profile endpoint */
+    public static final String PROFILE_URL = "https://api.mojang.com/profiles/minecraft";
     private final List<String> names;
     private final boolean rateLimiting;
 
@@ -58,41 +59,64 @@ public class UUIDFetcher implements Callable<Map<String, UUID>> {
 
     public Map<String, UUID> call() throws Exception {
         Map<String, UUID> uuidMap = new HashMap<String, UUID>();
-        int requests = (int) Math.ceil(names.size() / PROFILES_PER_REQUEST);
+        int requests = (int) Math.ceil(names.size() / (double) PROFILES_PER_REQUEST);
         for (int i = 0; i < requests; i++) {
-            HttpURLConnection connection = createConnection();
-            String body = JSONArray.toJSONString(names.subList(i * 100, Math.min((i + 1) * 100, names.size())));
-            writeBody(connection, body);
-            JSONArray array = (JSONArray) jsonParser.parse(new InputStreamReader(connection.getInputStream()));
+            uuidMap.putAll(UUIDFetcher.fetch(PROFILE_URL, names.subList(i * PROFILES_PER_REQUEST, Math.min((i + 1) * PROFILES_PER_REQUEST, names.size()))));
+            if (rateLimiting && i != requests - 1) {
+                Thread.sleep(100L);
+            }
+        }
+        return uuidMap;
+    }
+
+    /**
+     * Looks up one batch of names with a single request. Names the endpoint
+     * does not know are left out of the result.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param endpoint The profile endpoint to post to
+     * @param batch The names to look up, at most {@link #PROFILES_PER_REQUEST}
+     * @return The uuids that were found, keyed by name
+     * @throws Exception If the request failed
+     */
+    public static Map<String, UUID> fetch(String endpoint, List<String> batch) throws Exception {
+        Map<String, UUID> uuidMap = new HashMap<String, UUID>();
+        HttpURLConnection connection = createConnection(endpoint);
+        writeBody(connection, JSONArray.toJSONString(batch));
+        InputStreamReader in = new InputStreamReader(connection.getInputStream(), "UTF-8");
+        try {
+            JSONArray array = (JSONArray) new JSONParser().parse(in);
             for (Object profile : array) {
                 JSONObject jsonProfile = (JSONObject) profile;
                 String id = (String) jsonProfile.get("id");
                 String name = (String) jsonProfile.get("name");
-                UUID uuid = UUIDFetcher.getUUID(id);
-                uuidMap.put(name, uuid);
-            }
-            if (rateLimiting && i != requests - 1) {
-                Thread.sleep(100L);
+                uuidMap.put(name, UUIDFetcher.getUUID(id));
             }
+        } finally {
+            in.close();
         }
         return uuidMap;
     }
 
     private static void writeBody(HttpURLConnection connection, String body) throws Exception {
         OutputStream stream = connection.getOutputStream();
-        stream.write(body.getBytes());
+        stream.write(body.getBytes("UTF-8"));
         stream.flush();
         stream.close();
     }
 
-    private static HttpURLConnection createConnection() throws Exception {
-        URL url = new URL(PROFILE_URL);
+    private static HttpURLConnection createConnection(String endpoint) throws Exception {
+        URL url = new URL(endpoint);
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setRequestMethod("POST");
         connection.setRequestProperty("Content-Type", "application/json");
         connection.setUseCaches(false);
         connection.setDoInput(true);
         connection.setDoOutput(true);
+        connection.setConnectTimeout(10000);
+        connection.setReadTimeout(10000);
         return connection;
     }
 
@@ -21,6 +21,10 @@ import com.codelanx.playtime.command.commands.*;
 import com.codelanx.playtime.Playtime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -30,7 +34,7 @@ import org.bukkit.command.CommandSender;
  *
  * @since 1.3.0
  * @author 1Rogue
- * @version 1.4.2
+ * @version 2.0.0
  */
 public class CommandHandler implements CommandExecutor {
 
@@ -83,6 +87,32 @@ public class CommandHandler implements CommandExecutor {
         return false;
     }
 
+    /**
+     * Replies to a command sender once an asynchronous lookup completes. The
+     * reply is always run on the main thread, so it is free to use the Bukkit
+     * API. A failed lookup is logged and reported to the sender instead.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param <T> The type of the lookup result
+     * @param sender The command executor
+     * @param lookup The pending lookup
+     * @param reply The reply to run with the lookup result
+     */
+    public <T> void respond(final CommandSender sender, CompletableFuture<T> lookup, final Consumer<T> reply) {
+        lookup.whenCompleteAsync(new BiConsumer<T, Throwable>() {
+            public void accept(T result, Throwable ex) {
+                if (ex != null) {
+                    plugin.getLogger().log(Level.SEVERE, "{0}", plugin.getDebug() >= 3 ? ex : "null");
+                    sender.sendMessage(__(plugin.getCipher().getString("command.handler.error")));
+                    return;
+                }
+                reply.accept(result);
+            }
+        }, this.plugin.getExecutiveManager().getMainThreadExecutor());
+    }
+
     /**
      * Returns whether or not the command is a reload.
      *
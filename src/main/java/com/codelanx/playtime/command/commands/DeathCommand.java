@@ -20,7 +20,8 @@ import com.codelanx.playtime.Playtime;
 import static com.codelanx.playtime.Playtime.__;
 import com.codelanx.playtime.command.CommandBase;
 import java.util.UUID;
-import org.bukkit.OfflinePlayer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -29,7 +30,7 @@ import org.bukkit.entity.Player;
  *
  * @since 1.3.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class DeathCommand implements CommandBase {
     
@@ -40,18 +41,15 @@ public class DeathCommand implements CommandBase {
     }
 
     @Override
-    public boolean execute(CommandSender sender, Command cmd, String commandLabel, String[] args) {
+    public boolean execute(final CommandSender sender, Command cmd, String commandLabel, String[] args) {
         String name = null;
         UUID check = null;
         String perm = "playtime.death";
         if (args.length == 0 && sender instanceof Player) {
             check = ((Player) sender).getUniqueId();
+            name = sender.getName();
         } else if (args.length == 1) {
-            OfflinePlayer o = this.plugin.getServer().getOfflinePlayer(args[0]);
-            if (o != null) {
-                check = o.getUniqueId();
-                name = o.getName();
-            }
+            name = args[0];
             perm += ".others";
         } else {
             sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.death.console")));
@@ -59,14 +57,21 @@ public class DeathCommand implements CommandBase {
         }
         if (sender.hasPermission(perm)) {
             if (this.plugin.getConfigurationLoader().getBoolean("check.death-time")) {
-                int time = this.plugin.getDataManager().getDataHandler().getValue("deathtime", check);
-                int minutes = time % 60;
-                if (time >= 60) {
-                    int hours = time / 60;
-                    sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.death.playtime-hours", name, hours, (hours == 1 ? "" : "s"), minutes, (minutes == 1 ? "" : "s"))));
-                } else {
-                    sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.death.playtime-minutes", name, minutes, (minutes == 1 ? "" : "s"))));
-                }
+                final String display = this.plugin.getNameCache().getDisplayName(name);
+                CompletableFuture<Integer> lookup = check != null
+                        ? this.plugin.getDataManager().getValueAsync("deathtime", check)
+                        : this.plugin.getDataManager().getValueAsync("deathtime", name);
+                this.plugin.getCommandHandler().respond(sender, lookup, new Consumer<Integer>() {
+                    public void accept(Integer time) {
+                        int minutes = time % 60;
+                        if (time >= 60) {
+                            int hours = time / 60;
+                            sender.sendMessage(__(plugin.getCipher().getString("command.commands.death.playtime-hours", display, hours, (hours == 1 ? "" : "s"), minutes, (minutes == 1 ? "" : "s"))));
+                        } else {
+                            sender.sendMessage(__(plugin.getCipher().getString("command.commands.death.playtime-minutes", display, minutes, (minutes == 1 ? "" : "s"))));
+                        }
+                    }
+                });
             } else {
                 sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.death.disabled")));
             }
@@ -19,17 +19,22 @@ package com.codelanx.playtime.command.commands;
 import com.codelanx.playtime.Playtime;
 import com.codelanx.playtime.command.CommandBase;
 import static com.codelanx.playtime.Playtime.__;
+import com.codelanx.playtime.data.ConnectionPool;
+import com.codelanx.playtime.data.DataHandler;
+import com.codelanx.playtime.executables.PoolMetrics;
+import com.codelanx.playtime.listener.listeners.AFKListener;
 import java.util.HashMap;
 import java.util.Map;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.event.Listener;
 
 /**
  *
  * @since 1.4.0
  * @author 1Rogue
- * @version 1.4.0
+ * @version 2.0.0
  */
 public class PTCommand implements CommandBase {
     
@@ -46,6 +51,10 @@ public class PTCommand implements CommandBase {
         switch (args.length) {
             case 1:
                 if (args[0].equalsIgnoreCase("reload") && sender.hasPermission("playtime.reload")) {
+                    if (this.plugin.getDataManager().isConverting()) {
+                        sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.converting")));
+                        return true;
+                    }
                     if (sender instanceof Player) {
                         this.plugin.reload(sender.getName());
                         return true;
@@ -54,25 +63,28 @@ public class PTCommand implements CommandBase {
 
                 } else if (args[0].equalsIgnoreCase("confirm")) {
                     if (converters.get(sender) != null) {
+                        boolean started;
                         if (sender instanceof Player) {
-                            this.plugin.getDataManager().convertData(converters.get(sender), sender.getName());
+                            started = this.plugin.getDataManager().convertData(converters.get(sender), sender.getName());
                         } else {
-                            this.plugin.getDataManager().convertData(converters.get(sender));
+                            started = this.plugin.getDataManager().convertData(converters.get(sender));
                         }
                         converters.remove(sender);
-                        sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.longtime")));
-                        this.plugin.setBusy(true);
+                        sender.sendMessage(__(this.plugin.getCipher().getString(started ? "command.commands.pt.longtime" : "command.commands.pt.converting")));
                     } else if (swappers.get(sender) != null) {
-                        this.plugin.getConfigurationLoader().getConfig().set("data.manager", swappers.get(sender));
-                        this.plugin.getConfigurationLoader().saveConfig();
-                        this.plugin.setBusy(true);
+                        boolean started;
                         if (sender instanceof Player) {
-                            this.plugin.reload(sender.getName());
+                            started = this.plugin.getDataManager().swapData(swappers.get(sender), sender.getName());
                         } else {
-                            this.plugin.reload();
+                            started = this.plugin.getDataManager().swapData(swappers.get(sender));
                         }
                         swappers.remove(sender);
+                        if (!started) {
+                            sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.converting")));
+                        }
                     }
+                } else if (args[0].equalsIgnoreCase("stats") && sender.hasPermission("playtime.stats")) {
+                    this.sendStats(sender);
                 } else if (args[0].equalsIgnoreCase("cancel")) {
                     if (converters.get(sender) != null) {
                         converters.remove(sender);
@@ -85,7 +97,7 @@ public class PTCommand implements CommandBase {
             case 2:
                 if (args[0].equalsIgnoreCase("convert") && sender.hasPermission("playtime.convert")) {
                     args[1] = args[1].toLowerCase();
-                    if (args[1].equals("mysql") || args[1].equals("sqlite")) {
+                    if (this.plugin.getDataManager().getRegistry().get(args[1]) != null) {
                         if (args[1].equals(this.plugin.getDataManager().getDataHandler().getName())) {
                             sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.datainuse")));
                             return true;
@@ -100,7 +112,7 @@ public class PTCommand implements CommandBase {
                     }
                 } else if (args[0].equalsIgnoreCase("swap") && sender.hasPermission("playtime.swap")) {
                     args[1] = args[1].toLowerCase();
-                    if (args[1].equals("mysql") || args[1].equals("sqlite") || args[1].equals("flatfile")) {
+                    if (this.plugin.getDataManager().getRegistry().get(args[1]) != null || args[1].equals("flatfile")) {
                         if (args[1].equals(this.plugin.getDataManager().getDataHandler().getName())) {
                             sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.datainuse")));
                             return true;
@@ -123,4 +135,39 @@ public class PTCommand implements CommandBase {
     public String getName() {
         return "pt";
     }
+
+    /**
+     * Sends performance statistics for the thread pools, AFK checks and data
+     * manager in use
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param sender The user to send the statistics to
+     */
+    private void sendStats(CommandSender sender) {
+        for (PoolMetrics m : this.plugin.getExecutiveManager().getMetrics()) {
+            sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.stats-executor",
+                    m.getName(), m.getActive(), m.getQueued(), String.format("%.2f", m.getAverageWait()),
+                    String.format("%.2f", m.getAverageRun()), m.getCompleted(), m.getRejected())));
+        }
+        Listener afk = this.plugin.getListenerManager().getListener("afk");
+        if (afk instanceof AFKListener) {
+            AFKListener listener = (AFKListener) afk;
+            sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.stats-afk",
+                    listener.getAverageMoveNanos(), listener.getMoveEvents())));
+        }
+        DataHandler data = this.plugin.getDataManager().getDataHandler();
+        ConnectionPool pool = data.getConnectionPool();
+        if (pool == null) {
+            sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.stats-nopool", data.getName())));
+            return;
+        }
+        sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.stats-pool",
+                pool.getName(), pool.getActive(), pool.getSize(), pool.getUtilisation(), pool.getIdle())));
+        sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.stats-wait",
+                String.format("%.2f", pool.getAverageWait()), String.format("%.2f", pool.getMaxWait()),
+                pool.getBorrowCount(), pool.getTimeoutCount())));
+        sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.pt.stats-statements", pool.getStatementHitRate())));
+    }
 }
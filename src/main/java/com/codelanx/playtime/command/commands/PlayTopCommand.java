@@ -20,6 +20,7 @@ import com.codelanx.playtime.Playtime;
 import com.codelanx.playtime.command.CommandBase;
 import static com.codelanx.playtime.Playtime.__;
 import java.util.Map;
+import java.util.function.Consumer;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -34,7 +35,7 @@ import org.bukkit.scoreboard.ScoreboardManager;
  *
  * @since 1.4.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class PlayTopCommand implements CommandBase {
     
@@ -44,7 +45,7 @@ public class PlayTopCommand implements CommandBase {
         this.plugin = plugin;
     }
 
-    public boolean execute(CommandSender sender, Command cmd, String commandLabel, String[] args) {
+    public boolean execute(final CommandSender sender, Command cmd, String commandLabel, String[] args) {
         boolean scoreboard = false;
         if (sender instanceof Player) {
             scoreboard = true;
@@ -67,33 +68,38 @@ public class PlayTopCommand implements CommandBase {
                 i = Byte.parseByte(temp + "");
             } catch (NumberFormatException e) {}
         }
-        Map<String, Integer> players = this.plugin.getDataManager().getDataHandler().getTopPlayers("playtime", i);
-        if (players == null) {
-            sender.sendMessage(__(this.plugin.getCipher().getString("command.commands.playtop.disabled-flatfile")));
-            return true;
-        }
-        if (scoreboard) {
-            Player p = (Player)sender;
-            ScoreboardManager sbm = Bukkit.getScoreboardManager();
-            Scoreboard scoreBoard = sbm.getNewScoreboard();
-            Objective objv = scoreBoard.registerNewObjective("playtimetop", "dummy");
-            objv.setDisplaySlot(DisplaySlot.SIDEBAR);
-            objv.setDisplayName(this.plugin.getCipher().getString("command.commands.playtop.title-shown"));
-            Score score;
-            for (String s : players.keySet()) {
-                score = objv.getScore(Bukkit.getOfflinePlayer(s));
-                score.setScore(players.get(s)/60);
-            }
-            p.setScoreboard(scoreBoard);
-            p.sendMessage(__(this.plugin.getCipher().getString("command.commands.playtop.clear")));
+        final boolean board = scoreboard;
+        final byte amount = i;
+        this.plugin.getCommandHandler().respond(sender, this.plugin.getDataManager().getTopPlayersAsync("playtime", i), new Consumer<Map<String, Integer>>() {
+            public void accept(Map<String, Integer> players) {
+                if (players == null) {
+                    sender.sendMessage(__(plugin.getCipher().getString("command.commands.playtop.disabled-flatfile")));
+                    return;
+                }
+                if (board) {
+                    Player p = (Player)sender;
+                    ScoreboardManager sbm = Bukkit.getScoreboardManager();
+                    Scoreboard scoreBoard = sbm.getNewScoreboard();
+                    Objective objv = scoreBoard.registerNewObjective("playtimetop", "dummy");
+                    objv.setDisplaySlot(DisplaySlot.SIDEBAR);
+                    objv.setDisplayName(plugin.getCipher().getString("command.commands.playtop.title-shown"));
+                    Score score;
+                    for (String s : players.keySet()) {
+                        score = objv.getScore(Bukkit.getOfflinePlayer(s));
+                        score.setScore(players.get(s)/60);
+                    }
+                    p.setScoreboard(scoreBoard);
+                    p.sendMessage(__(plugin.getCipher().getString("command.commands.playtop.clear")));
             
-        } else {
-            StringBuilder sb = new StringBuilder(this.plugin.getCipher().getString("command.commands.playtop.console-title", i));
-            for (String s : players.keySet()) {
-                sb.append('\n').append(s).append(" - ").append(players.get(s)/60);
+                } else {
+                    StringBuilder sb = new StringBuilder(plugin.getCipher().getString("command.commands.playtop.console-title", amount));
+                    for (String s : players.keySet()) {
+                        sb.append('\n').append(s).append(" - ").append(players.get(s)/60);
+                    }
+                    sender.sendMessage(sb.toString());
+                }
             }
-            sender.sendMessage(sb.toString());
-        }
+        });
         return true;
     }
 
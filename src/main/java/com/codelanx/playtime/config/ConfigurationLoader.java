@@ -19,8 +19,13 @@ package com.codelanx.playtime.config;
 import com.codelanx.playtime.Playtime;
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 /**
@@ -28,7 +33,7 @@ import org.bukkit.configuration.file.YamlConfiguration;
  *
  * @since 1.3.0
  * @author 1Rogue
- * @version 1.4.0
+ * @version 2.0.0
  */
 public class ConfigurationLoader {
 
@@ -46,7 +51,7 @@ public class ConfigurationLoader {
      * Verifies the values within the configuration, and the file itself
      * 
      * @since 1.3.0
-     * @version 1.4.0
+     * @version 2.0.0
      */
     private void verifyConfig() {
         if (this.plugin.getDataFolder().exists()) {
@@ -68,14 +73,36 @@ public class ConfigurationLoader {
             if (!this.yaml.isSet("afk.interval")) { this.yaml.set("afk.interval", 60); }
             if (!this.yaml.isSet("afk.timeout")) { this.yaml.set("afk.timeout", 900); }
             if (!this.yaml.isSet("afk.check-chat")) { this.yaml.set("afk.check-chat", false); }
+            if (!this.yaml.isSet("afk.movement")) { this.yaml.set("afk.movement", "any"); }
             if (!this.yaml.isSet("events.enabled")) { this.yaml.set("events.enabled", true); }
-            if (!this.yaml.isSet("events.interval")) { this.yaml.set("events.interval", 600); }
+            if (!this.yaml.isSet("events.dispatch-budget")) { this.yaml.set("events.dispatch-budget", 5); }
+            if (!this.yaml.isSet("executors.timer-threads")) { this.yaml.set("executors.timer-threads", 2); }
+            if (!this.yaml.isSet("executors.io-threads")) { this.yaml.set("executors.io-threads", 4); }
+            if (!this.yaml.isSet("executors.queue-size")) { this.yaml.set("executors.queue-size", 1000); }
+            if (!this.yaml.isSet("executors.drain-timeout")) { this.yaml.set("executors.drain-timeout", 5); }
+            if (!this.yaml.isSet("uuid.endpoint")) { this.yaml.set("uuid.endpoint", "https://api.mojang.com/profiles/minecraft"); }
+            if (!this.yaml.isSet("uuid.threads")) { this.yaml.set("uuid.threads", 4); }
+            if (!this.yaml.isSet("uuid.requests-per-second")) { this.yaml.set("uuid.requests-per-second", 1.0); }
+            if (!this.yaml.isSet("uuid.burst")) { this.yaml.set("uuid.burst", 10); }
             if (!this.yaml.isSet("data.manager")) { this.yaml.set("data.manager", "flatfile"); }
+            if (!this.yaml.isSet("data.pool.size")) { this.yaml.set("data.pool.size", 10); }
+            if (!this.yaml.isSet("data.pool.timeout")) { this.yaml.set("data.pool.timeout", 10); }
+            if (!this.yaml.isSet("data.pool.validate-after")) { this.yaml.set("data.pool.validate-after", 30); }
+            if (!this.yaml.isSet("data.flush.interval")) { this.yaml.set("data.flush.interval", 60); }
+            if (!this.yaml.isSet("data.flush.batch-size")) { this.yaml.set("data.flush.batch-size", 500); }
+            if (!this.yaml.isSet("data.cache.size")) { this.yaml.set("data.cache.size", 500); }
+            if (!this.yaml.isSet("data.cache.ttl")) { this.yaml.set("data.cache.ttl", 300); }
+            if (!this.yaml.isSet("data.leaderboard.size")) { this.yaml.set("data.leaderboard.size", 50); }
             if (!this.yaml.isSet("managers.mysql.host")) { this.yaml.set("managers.mysql.host", "localhost"); }
             if (!this.yaml.isSet("managers.mysql.port")) { this.yaml.set("managers.mysql.port", "3306"); }
             if (!this.yaml.isSet("managers.mysql.database")) { this.yaml.set("managers.mysql.database", "minecraft"); }
             if (!this.yaml.isSet("managers.mysql.username")) { this.yaml.set("managers.mysql.username", "root"); }
             if (!this.yaml.isSet("managers.mysql.password")) { this.yaml.set("managers.mysql.password", "password"); }
+            if (!this.yaml.isSet("managers.sqlite.readers")) { this.yaml.set("managers.sqlite.readers", 4); }
+            if (!this.yaml.isSet("managers.sqlite.busy-timeout")) { this.yaml.set("managers.sqlite.busy-timeout", 5); }
+            if (!this.yaml.isSet("managers.kv.sync")) { this.yaml.set("managers.kv.sync", true); }
+            if (!this.yaml.isSet("managers.kv.compact-interval")) { this.yaml.set("managers.kv.compact-interval", 300); }
+            if (!this.yaml.isSet("managers.kv.compact-ratio")) { this.yaml.set("managers.kv.compact-ratio", 4); }
 
             this.saveConfig();
         }
@@ -145,4 +172,64 @@ public class ConfigurationLoader {
     public synchronized boolean getBoolean(String path) {
         return this.yaml.getBoolean(path);
     }
+
+    /**
+     * Gets a double value from the config
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param path Path to double value
+     * @return double value
+     */
+    public synchronized double getDouble(String path) {
+        return this.yaml.getDouble(path);
+    }
+
+    /**
+     * Compares two configurations value by value
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param old The configuration in use
+     * @param current The configuration to compare it with
+     * @return The paths of every value that was changed, added or removed
+     */
+    public static Set<String> diff(ConfigurationSection old, ConfigurationSection current) {
+        Map<String, Object> before = ConfigurationLoader.getValues(old);
+        Map<String, Object> after = ConfigurationLoader.getValues(current);
+        Set<String> back = new TreeSet<String>();
+        for (Map.Entry<String, Object> ent : before.entrySet()) {
+            Object now = after.remove(ent.getKey());
+            if (now == null ? ent.getValue() != null : !now.equals(ent.getValue())) {
+                back.add(ent.getKey());
+            }
+        }
+        back.addAll(after.keySet());
+        return back;
+    }
+
+    /**
+     * Returns every value in a configuration by its full path, leaving out
+     * the sections holding them
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param section The configuration to read
+     * @return The values, keyed by path
+     */
+    private static Map<String, Object> getValues(ConfigurationSection section) {
+        Map<String, Object> back = new HashMap<String, Object>();
+        if (section == null) {
+            return back;
+        }
+        for (Map.Entry<String, Object> ent : section.getValues(true).entrySet()) {
+            if (!(ent.getValue() instanceof ConfigurationSection)) {
+                back.put(ent.getKey(), ent.getValue());
+            }
+        }
+        return back;
+    }
 }
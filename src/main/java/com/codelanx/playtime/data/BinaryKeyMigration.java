@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.Playtime;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Moves an old {@code playTime} table, keyed by an auto-increment id with the
+ * uuid kept as text, over to one keyed by the 16 byte uuid itself. Rows for the
+ * same uuid are merged, and rows that never had a uuid are moved into
+ * {@code playTime_legacy} until they can be looked up. The old table is left
+ * untouched until the new one is fully written, so a failed run can simply be
+ * started again.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class BinaryKeyMigration implements Migration {
+
+    /** The table holding rows that are still waiting on a uuid */
+    public static final String LEGACY_TABLE = "playTime_legacy";
+    private static final int BATCH_SIZE = 1000;
+    private static final String SELECT = "SELECT `id`, `username`, `uuid`, `playtime`, `deathtime`, `onlinetime` FROM `playTime` WHERE `id` > ? ORDER BY `id` LIMIT " + BATCH_SIZE;
+    private static final String MERGE = "UPDATE `playTime_new` SET `username`=?, `playtime`=`playtime`+?, `deathtime`=`deathtime`+?, `onlinetime`=`onlinetime`+? WHERE `uuid`=?";
+    private static final String INSERT = "INSERT INTO `playTime_new` (`username`, `uuid`, `playtime`, `deathtime`, `onlinetime`) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_LEGACY = "INSERT INTO `" + LEGACY_TABLE + "` (`id`, `username`, `playtime`, `deathtime`, `onlinetime`) VALUES (?, ?, ?, ?, ?)";
+    private final Playtime plugin;
+    private final String[] create;
+    private final String[] swap;
+    private int converted = 0;
+    private int legacy = 0;
+
+    /**
+     * Constructor for {@link BinaryKeyMigration}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param create Statements creating {@code playTime_new} and
+     *               {@code playTime_legacy} in the new layout
+     * @param swap Statements replacing {@code playTime} with
+     *             {@code playTime_new}, and dropping the old table
+     */
+    public BinaryKeyMigration(Playtime plugin, String[] create, String[] swap) {
+        this.plugin = plugin;
+        this.create = create;
+        this.swap = swap;
+    }
+
+    public int getVersion() {
+        return 2;
+    }
+
+    public String getName() {
+        return "binary uuid key";
+    }
+
+    /**
+     * Checks whether the {@code playTime} table still has the old layout
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to check with
+     * @return true if the table is keyed by an id column
+     * @throws SQLException If the table could not be inspected
+     */
+    public static boolean isNeeded(Connection con) throws SQLException {
+        return SchemaMigrator.hasColumn(con, "playTime", "id");
+    }
+
+    /**
+     * Runs the migration, if the table still has the old layout
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to migrate with
+     * @throws SQLException If the migration failed, in which case the old
+     *                      table is still in place
+     */
+    public void apply(Connection con) throws SQLException {
+        if (!BinaryKeyMigration.isNeeded(con)) {
+            return;
+        }
+        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.migration.binary-key.start"));
+        Statement stmt = con.createStatement();
+        try {
+            stmt.executeUpdate("DROP TABLE IF EXISTS `playTime_new`");
+            stmt.executeUpdate("DROP TABLE IF EXISTS `" + LEGACY_TABLE + "`");
+            stmt.executeUpdate("DROP TABLE IF EXISTS `playTime_old`");
+            for (String sql : this.create) {
+                stmt.executeUpdate(sql);
+            }
+            this.copy(con);
+            for (String sql : this.swap) {
+                stmt.executeUpdate(sql);
+            }
+        } finally {
+            stmt.close();
+        }
+        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.migration.binary-key.complete", this.converted, this.legacy));
+    }
+
+    /**
+     * Copies every row of the old table into the new tables. Rows are read by
+     * id in fixed-size pages, so only one page is ever held in memory no
+     * matter how the driver fetches results. Duplicates of a uuid are summed
+     * within a page, then added onto any row an earlier page already wrote.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to copy with
+     * @throws SQLException If the rows could not be copied
+     */
+    private void copy(Connection con) throws SQLException {
+        PreparedStatement read = con.prepareStatement(SELECT);
+        PreparedStatement merge = con.prepareStatement(MERGE);
+        PreparedStatement insert = con.prepareStatement(INSERT);
+        PreparedStatement legacyInsert = con.prepareStatement(INSERT_LEGACY);
+        try {
+            int last = 0;
+            int rows;
+            do {
+                Map<UUID, int[]> values = new LinkedHashMap<UUID, int[]>();
+                Map<UUID, String> names = new HashMap<UUID, String>();
+                rows = 0;
+                read.setInt(1, last);
+                ResultSet rs = read.executeQuery();
+                try {
+                    while (rs.next()) {
+                        rows++;
+                        last = rs.getInt(1);
+                        UUID uuid = parse(rs.getString(3));
+                        if (uuid == null) {
+                            PooledConnection.bind(legacyInsert, last, rs.getString(2), rs.getInt(4), rs.getInt(5), rs.getInt(6));
+                            legacyInsert.addBatch();
+                            this.legacy++;
+                            continue;
+                        }
+                        int[] sum = values.get(uuid);
+                        if (sum == null) {
+                            sum = new int[3];
+                            values.put(uuid, sum);
+                        }
+                        //rows come in id order, so the last name seen is the newest
+                        names.put(uuid, rs.getString(2));
+                        sum[0] += rs.getInt(4);
+                        sum[1] += rs.getInt(5);
+                        sum[2] += rs.getInt(6);
+                    }
+                } finally {
+                    rs.close();
+                }
+                legacyInsert.executeBatch();
+                this.write(merge, insert, values, names);
+            } while (rows == BATCH_SIZE);
+        } finally {
+            read.close();
+            merge.close();
+            insert.close();
+            legacyInsert.close();
+        }
+    }
+
+    /**
+     * Writes one page of summed rows, adding onto rows already in the new
+     * table and inserting the rest
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param merge The statement adding onto an existing row
+     * @param insert The statement inserting a new row
+     * @param values The summed timer values, by uuid
+     * @param names The newest name, by uuid
+     * @throws SQLException If the rows could not be written
+     */
+    private void write(PreparedStatement merge, PreparedStatement insert, Map<UUID, int[]> values, Map<UUID, String> names) throws SQLException {
+        if (values.isEmpty()) {
+            return;
+        }
+        List<UUID> order = new ArrayList<UUID>(values.keySet());
+        for (UUID uuid : order) {
+            int[] sum = values.get(uuid);
+            PooledConnection.bind(merge, names.get(uuid), sum[0], sum[1], sum[2], uuid);
+            merge.addBatch();
+        }
+        int[] counts = merge.executeBatch();
+        boolean missing = false;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                UUID uuid = order.get(i);
+                int[] sum = values.get(uuid);
+                PooledConnection.bind(insert, names.get(uuid), uuid, sum[0], sum[1], sum[2]);
+                insert.addBatch();
+                this.converted++;
+                missing = true;
+            }
+        }
+        if (missing) {
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Reads a uuid stored as text
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The stored value
+     * @return The uuid, or null if the row has none
+     */
+    private static UUID parse(String uuid) {
+        if (uuid == null || uuid.length() != 36) {
+            return null;
+        }
+        try {
+            return UUID.fromString(uuid);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+}
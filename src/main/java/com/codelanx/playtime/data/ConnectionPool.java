@@ -0,0 +1,464 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.config.ConfigurationLoader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of long-lived JDBC connections. Idle connections are handed
+ * out most-recently-used first, and are only validated against the database
+ * if they have been idle for longer than the validation threshold.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class ConnectionPool {
+
+    private static final int VALIDATION_TIMEOUT = 2;
+    private final String name;
+    private final ConnectionFactory factory;
+    private final int size;
+    private final long timeout;
+    private final long validateAfter;
+    private final Semaphore permits;
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<PooledConnection>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong maxWait = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor for {@link ConnectionPool}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param name The name of the pool, used in error messages
+     * @param factory The source of new connections
+     * @param size The maximum number of connections that can be in use
+     * @param timeout Time (in milliseconds) to wait for a free connection
+     * @param validateAfter Time (in milliseconds) a connection may be idle
+     *                      before it is validated on borrow
+     */
+    public ConnectionPool(String name, ConnectionFactory factory, int size, long timeout, long validateAfter) {
+        this.name = name;
+        this.factory = factory;
+        this.size = Math.max(1, size);
+        this.timeout = Math.max(0, timeout);
+        this.validateAfter = Math.max(0, validateAfter);
+        this.permits = new Semaphore(this.size, true);
+    }
+
+    /**
+     * Creates a new {@link ConnectionPool} using the sizing and timeouts set
+     * in the configuration file
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param name The name of the pool
+     * @param factory The source of new connections
+     * @return The new pool
+     */
+    public static ConnectionPool create(Playtime plugin, String name, ConnectionFactory factory) {
+        return ConnectionPool.create(plugin, name, factory, plugin.getConfigurationLoader().getInt("data.pool.size"));
+    }
+
+    /**
+     * Creates a new {@link ConnectionPool} of a fixed size, using the timeouts
+     * set in the configuration file
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param name The name of the pool
+     * @param factory The source of new connections
+     * @param size The maximum number of connections, or 0 for the default
+     * @return The new pool
+     */
+    public static ConnectionPool create(Playtime plugin, String name, ConnectionFactory factory, int size) {
+        ConfigurationLoader config = plugin.getConfigurationLoader();
+        long timeout = config.getInt("data.pool.timeout");
+        long validate = config.getInt("data.pool.validate-after");
+        return new ConnectionPool(name, factory,
+                size > 0 ? size : 10,
+                TimeUnit.SECONDS.toMillis(timeout > 0 ? timeout : 10),
+                TimeUnit.SECONDS.toMillis(validate >= 0 ? validate : 30));
+    }
+
+    /**
+     * Borrows a connection from the pool, blocking until one is available or
+     * the pool's timeout is reached. The returned connection must be given
+     * back using {@link PooledConnection#release()}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return A leased connection
+     * @throws SQLException If no connection could be made or none became free
+     *                      within the timeout
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (this.closed) {
+            throw new SQLException("Connection pool '" + this.name + "' is closed");
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = this.permits.tryAcquire(this.timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting on connection pool '" + this.name + "'", ex);
+        }
+        this.recordWait(System.nanoTime() - start);
+        if (!acquired) {
+            this.timeouts.incrementAndGet();
+            throw new SQLException("Timed out after " + this.timeout + "ms waiting on connection pool '" + this.name + "'");
+        }
+        try {
+            PooledConnection con;
+            while ((con = this.idle.pollFirst()) != null) {
+                if (this.isUsable(con) && con.lease()) {
+                    this.active.incrementAndGet();
+                    return con;
+                }
+                this.discard(con);
+            }
+            con = new PooledConnection(this, this.factory.create());
+            this.created.incrementAndGet();
+            con.lease();
+            this.active.incrementAndGet();
+            return con;
+        } catch (SQLException ex) {
+            this.permits.release();
+            throw ex;
+        } catch (RuntimeException ex) {
+            this.permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool. Connections left in a transaction are
+     * rolled back, and broken connections are discarded.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to return
+     */
+    void release(PooledConnection con) {
+        if (!con.unlease()) {
+            return;
+        }
+        this.active.decrementAndGet();
+        try {
+            Connection raw = con.getConnection();
+            if (this.closed || raw.isClosed()) {
+                this.discard(con);
+                return;
+            }
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            this.idle.offerFirst(con);
+            if (this.closed) {
+                //lost a race with close(), so drain again
+                this.close();
+            }
+        } catch (SQLException ex) {
+            this.discard(con);
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Closes all idle connections and refuses any further borrowing. Leased
+     * connections are closed as they are released.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void close() {
+        this.closed = true;
+        PooledConnection con;
+        while ((con = this.idle.pollFirst()) != null) {
+            this.discard(con);
+        }
+    }
+
+    /**
+     * Checks whether an idle connection can still be used
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to check
+     * @return true if the connection is safe to hand out
+     */
+    private boolean isUsable(PooledConnection con) {
+        try {
+            if (con.needsValidation(this.validateAfter)) {
+                return con.getConnection().isValid(VALIDATION_TIMEOUT);
+            }
+            return !con.getConnection().isClosed();
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes a connection and drops it from the pool
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to throw out
+     */
+    private void discard(PooledConnection con) {
+        this.discarded.incrementAndGet();
+        try {
+            con.getConnection().close();
+        } catch (SQLException ex) {
+            // already unusable, nothing left to do
+        }
+    }
+
+    /**
+     * Adds a borrow's wait time to the pool statistics
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param nanos The time spent waiting, in nanoseconds
+     */
+    private void recordWait(long nanos) {
+        this.borrows.incrementAndGet();
+        this.waitTime.addAndGet(nanos);
+        long max;
+        do {
+            max = this.maxWait.get();
+        } while (nanos > max && !this.maxWait.compareAndSet(max, nanos));
+    }
+
+    /**
+     * Records a lookup against a connection's prepared statement cache
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param hit Whether the statement was already prepared
+     */
+    void recordStatement(boolean hit) {
+        if (hit) {
+            this.statementHits.incrementAndGet();
+        } else {
+            this.statementMisses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the name of this pool
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The pool name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the maximum number of connections that can be in use at once
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The pool size
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of connections currently borrowed
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Active connection count
+     */
+    public int getActive() {
+        return this.active.get();
+    }
+
+    /**
+     * Returns the number of open connections waiting to be borrowed
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Idle connection count
+     */
+    public int getIdle() {
+        return this.idle.size();
+    }
+
+    /**
+     * Returns the percentage of the pool currently in use
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Pool utilisation, from 0 to 100
+     */
+    public int getUtilisation() {
+        return (this.getActive() * 100) / this.size;
+    }
+
+    /**
+     * Returns the average time spent waiting for a connection
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Average wait time in milliseconds
+     */
+    public double getAverageWait() {
+        long count = this.borrows.get();
+        return count == 0 ? 0 : (this.waitTime.get() / (double) count) / 1000000D;
+    }
+
+    /**
+     * Returns the longest time spent waiting for a connection
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Maximum wait time in milliseconds
+     */
+    public double getMaxWait() {
+        return this.maxWait.get() / 1000000D;
+    }
+
+    /**
+     * Returns the number of borrows made against the pool
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Total borrow count
+     */
+    public long getBorrowCount() {
+        return this.borrows.get();
+    }
+
+    /**
+     * Returns the number of borrows that gave up waiting
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Total timeout count
+     */
+    public long getTimeoutCount() {
+        return this.timeouts.get();
+    }
+
+    /**
+     * Returns the number of physical connections opened by the pool
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Total connections created
+     */
+    public long getCreatedCount() {
+        return this.created.get();
+    }
+
+    /**
+     * Returns the percentage of prepared statements that were served from a
+     * connection's statement cache
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Statement cache hit rate, from 0 to 100
+     */
+    public int getStatementHitRate() {
+        long hits = this.statementHits.get();
+        long total = hits + this.statementMisses.get();
+        return total == 0 ? 0 : (int) ((hits * 100) / total);
+    }
+
+    /**
+     * Returns whether the pool has been closed
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Opens new physical connections for a {@link ConnectionPool}
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    public static interface ConnectionFactory {
+
+        /**
+         * Opens a brand new connection to the database
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @return The new connection
+         * @throws SQLException If the connection could not be made
+         */
+        public Connection create() throws SQLException;
+
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.Playtime;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The first schema step. Creates {@code playTime} in its current layout on a
+ * fresh database, or adds any columns missing from a table made by a release
+ * before 1.5.0, so that later steps can move it over to the current layout.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class CreateTableMigration implements Migration {
+
+    private static final String[][] COLUMNS = {
+        {"username", "VARCHAR(32) NOT NULL DEFAULT ''", "1.0"},
+        {"playtime", "int NOT NULL DEFAULT 0", "1.1"},
+        {"deathtime", "int NOT NULL DEFAULT 0", "1.2.0"},
+        {"onlinetime", "int NOT NULL DEFAULT 0", "1.3.0"},
+        {"uuid", "VARCHAR(36) NOT NULL DEFAULT ''", "1.5.0"}
+    };
+    private final Playtime plugin;
+    private final String create;
+
+    /**
+     * Constructor for {@link CreateTableMigration}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param create The statement creating {@code playTime} in its current
+     *               layout
+     */
+    public CreateTableMigration(Playtime plugin, String create) {
+        this.plugin = plugin;
+        this.create = create;
+    }
+
+    public int getVersion() {
+        return 1;
+    }
+
+    public String getName() {
+        return "create playTime";
+    }
+
+    public void apply(Connection con) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            if (!SchemaMigrator.hasTable(con, "playTime")) {
+                this.plugin.getLogger().info(this.plugin.getCipher().getString("data.migration.create-table"));
+                stmt.executeUpdate(this.create);
+                return;
+            }
+            if (!BinaryKeyMigration.isNeeded(con)) {
+                return;
+            }
+            for (String[] col : COLUMNS) {
+                if (!SchemaMigrator.hasColumn(con, "playTime", col[0])) {
+                    this.plugin.getLogger().info(this.plugin.getCipher().getString("data.migration.add-column", col[0], col[2]));
+                    stmt.executeUpdate("ALTER TABLE `playTime` ADD COLUMN `" + col[0] + "` " + col[1]);
+                }
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+}
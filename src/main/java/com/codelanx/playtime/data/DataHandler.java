@@ -16,14 +16,21 @@
  */
 package com.codelanx.playtime.data;
 
+import com.codelanx.playtime.data.TimeAccumulator.Delta;
+import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  *
  * @since 1.3.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public interface DataHandler {
     
@@ -48,6 +55,19 @@ public interface DataHandler {
      * @return The integer value, or 0 if it is not found
      */
     public abstract int getValue(String data, UUID user);
+
+    /**
+     * Gets every timer value of a particular user in a single lookup
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param user The user UUID to look for
+     * @return The values indexed by {@link Timer} ordinal, or null if the user
+     *         is not found
+     * @throws SQLException If the values could not be read
+     */
+    public abstract int[] getValues(UUID user) throws SQLException;
     
     /**
      * Gets the top players within a data category (e.g. deathtime)
@@ -58,30 +78,122 @@ public interface DataHandler {
      * @param data The data type to select, used in the query
      * @param amount The amount of players to return
      * 
-     * @return A map object containing the strings for the top players, and an integer value of their time
+     * @return A map object containing the strings for the top players, and an integer value of their time, ordered from highest
      */
     public abstract Map<String, Integer> getTopPlayers(String data, byte amount);
+
+    /**
+     * Gets the top players within a data category along with their uuids,
+     * used to build a {@link Leaderboard}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param data The data type to select, used in the query
+     * @param amount The amount of players to return
+     * @return The entries ordered from highest, or null if they could not be
+     *         read
+     */
+    public abstract List<Leaderboard.Entry> getTopEntries(String data, int amount);
     
+    /**
+     * Gets the last known name of every player with a uuid, used to warm the
+     * {@link com.codelanx.playtime.player.NameCache}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The names keyed by uuid, or null if they could not be read
+     */
+    public abstract Map<UUID, String> getNames();
+
     /**
      * Gets the players within a range of a timer.
      * 
      * @since 1.4.0
      * @version 1.4.0
      * 
-     * @param maximum The maximum time
+     * @param timer The timer column to check
      * @param minimum The minimum time
+     * @param maximum The maximum time
      * @return ArrayList containing players within the range, empty if there are no players in range
      */
-    public abstract Map<String, Integer> getPlayersInRange(String timer, int maximum, int minimum);
+    public abstract Map<String, Integer> getPlayersInRange(String timer, int minimum, int maximum);
+
+    /**
+     * Gets a value of a particular user without blocking the calling thread
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @see #getValue(String, UUID)
+     * @param data The timer column to look up
+     * @param user The user UUID to look for
+     * @param executor The executor to run the lookup on
+     * @return A future completed with the value, or 0 if it is not found
+     */
+    public default CompletableFuture<Integer> getValueAsync(final String data, final UUID user, Executor executor) {
+        return CompletableFuture.supplyAsync(new Supplier<Integer>() {
+            public Integer get() {
+                return getValue(data, user);
+            }
+        }, executor);
+    }
+
+    /**
+     * Gets the top players within a data category without blocking the
+     * calling thread
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @see #getTopPlayers(String, byte)
+     * @param data The timer column to select
+     * @param amount The amount of players to return
+     * @param executor The executor to run the lookup on
+     * @return A future completed with the top players, ordered from highest
+     */
+    public default CompletableFuture<Map<String, Integer>> getTopPlayersAsync(final String data, final byte amount, Executor executor) {
+        return CompletableFuture.supplyAsync(new Supplier<Map<String, Integer>>() {
+            public Map<String, Integer> get() {
+                return getTopPlayers(data, amount);
+            }
+        }, executor);
+    }
+
+    /**
+     * Gets the players within a range of a timer without blocking the calling
+     * thread
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @see #getPlayersInRange(String, int, int)
+     * @param timer The timer column to check
+     * @param minimum The minimum time
+     * @param maximum The maximum time
+     * @param executor The executor to run the lookup on
+     * @return A future completed with the players in range
+     */
+    public default CompletableFuture<Map<String, Integer>> getPlayersInRangeAsync(final String timer, final int minimum, final int maximum, Executor executor) {
+        return CompletableFuture.supplyAsync(new Supplier<Map<String, Integer>>() {
+            public Map<String, Integer> get() {
+                return getPlayersInRange(timer, minimum, maximum);
+            }
+        }, executor);
+    }
     
     /**
-     * A void method used to double-check that the files/sql databases are
-     * correctly formatted, and will not cause errors in the future.
+     * Double-checks that the files/sql databases are correctly formatted, and
+     * will not cause errors in the future. Leaves it to the caller to decide
+     * what to do if they are not.
      * 
      * @since 1.3.0
-     * @version 1.3.0
+     * @version 2.0.0
+     * 
+     * @return true if the storage is ready to use
      */
-    public abstract void verifyFormat();
+    public abstract boolean verifyFormat();
     
     /**
      * Sets any necessary variables before dealing with data management.
@@ -121,4 +233,123 @@ public interface DataHandler {
      * @version 1.3.0
      */
     public abstract void cleanup();
+
+    /**
+     * Returns the pool of database connections used by this data type
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The connection pool, or null if this data type does not use one
+     */
+    public abstract ConnectionPool getConnectionPool();
+
+    /**
+     * Sets timers back to zero in a single transaction
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param reset The players to reset, grouped by timer
+     * @throws SQLException If the resets could not be written
+     */
+    public abstract void reset(Map<Timer, Set<UUID>> reset) throws SQLException;
+
+    /**
+     * Adds one batch of counted minutes in a single transaction, creating the
+     * rows of players not stored yet
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param batch The deltas to write
+     * @throws SQLException If the batch could not be written
+     */
+    public abstract void write(List<Delta> batch) throws SQLException;
+
+    /**
+     * Counts the stored players
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The number of players
+     * @throws SQLException If the players could not be counted
+     */
+    public abstract int count() throws SQLException;
+
+    /**
+     * Reads a chunk of stored players, ordered by the raw bytes of their uuid
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param after The uuid of the last player already read, or null to start
+     *              from the beginning
+     * @param limit The most players to return
+     * @return The players, fewer than the limit once the end is reached
+     * @throws SQLException If the players could not be read
+     */
+    public abstract List<PlayerRecord> exportPlayers(UUID after, int limit) throws SQLException;
+
+    /**
+     * Adds players that are not stored yet in a single transaction
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param players The players to add
+     * @throws SQLException If the players could not be written
+     */
+    public abstract void importPlayers(List<PlayerRecord> players) throws SQLException;
+
+    /**
+     * Reads a chunk of the rows still waiting on a uuid, in id order
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param after The id of the last row already read, or 0 to start from
+     *              the beginning
+     * @param limit The most rows to return
+     * @return The rows, fewer than the limit once the end is reached
+     * @throws SQLException If the rows could not be read
+     */
+    public abstract List<LegacyRecord> exportLegacy(int after, int limit) throws SQLException;
+
+    /**
+     * Adds rows waiting on a uuid in a single transaction, keeping their ids
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param rows The rows to add
+     * @throws SQLException If the rows could not be written
+     */
+    public abstract void importLegacy(List<LegacyRecord> rows) throws SQLException;
+
+    /**
+     * Moves rows waiting on a uuid over to their players in a single
+     * transaction. A row for a player that is already stored is added onto
+     * them, and rows whose name was not resolved are left in place.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param resolved The uuids that were found, keyed by name
+     * @param batch The rows to move
+     * @return The number of rows moved
+     * @throws SQLException If the rows could not be moved
+     */
+    public abstract int moveLegacy(Map<String, UUID> resolved, List<LegacyRecord> batch) throws SQLException;
+
+    /**
+     * Removes every stored player and every row waiting on a uuid
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @throws SQLException If the data could not be removed
+     */
+    public abstract void clear() throws SQLException;
 }
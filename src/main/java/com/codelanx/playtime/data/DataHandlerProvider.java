@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.Playtime;
+
+/**
+ * Makes {@link DataHandler} instances for one data type. Providers are found
+ * through {@link java.util.ServiceLoader}, by listing them in
+ * {@code META-INF/services/com.codelanx.playtime.data.DataHandlerProvider},
+ * or can be added to the {@link DataHandlerRegistry} directly. Implementations
+ * must have a public constructor taking no arguments.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public interface DataHandlerProvider {
+
+    /**
+     * Returns the name of the data type, as set in {@code data.manager} and
+     * returned by {@link DataHandler#getName()}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The lowercase name of the data type
+     */
+    public String getName();
+
+    /**
+     * Makes a new, unstarted data handler
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @return The new data handler
+     */
+    public DataHandler create(Playtime plugin);
+
+}
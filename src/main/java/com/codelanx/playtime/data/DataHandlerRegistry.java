@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.Playtime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+
+/**
+ * Keeps the data types that can be selected in {@code data.manager}, keyed by
+ * name. Every {@link DataHandlerProvider} listed as a service in the plugin's
+ * jar is registered on creation, and other plugins may register their own.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class DataHandlerRegistry {
+
+    private final Playtime plugin;
+    private final Map<String, DataHandlerProvider> providers = new TreeMap<String, DataHandlerProvider>();
+
+    /**
+     * Constructor for {@link DataHandlerRegistry}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     */
+    public DataHandlerRegistry(Playtime plugin) {
+        this.plugin = plugin;
+        try {
+            for (DataHandlerProvider provider : ServiceLoader.load(DataHandlerProvider.class, Playtime.class.getClassLoader())) {
+                this.register(provider);
+            }
+        } catch (ServiceConfigurationError ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? ex : "null");
+        }
+    }
+
+    /**
+     * Adds a data type, replacing any registered under the same name
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param provider The provider of the data type
+     */
+    public synchronized void register(DataHandlerProvider provider) {
+        this.providers.put(provider.getName().toLowerCase(), provider);
+    }
+
+    /**
+     * Returns the provider of a data type
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param name The name of the data type, in any case
+     * @return The provider, or null if no such data type is registered
+     */
+    public synchronized DataHandlerProvider get(String name) {
+        return this.providers.get(name.toLowerCase());
+    }
+
+    /**
+     * Returns the names of every registered data type
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The data type names, in alphabetical order
+     */
+    public synchronized Set<String> getNames() {
+        return Collections.unmodifiableSet(new TreeSet<String>(this.providers.keySet()));
+    }
+
+}
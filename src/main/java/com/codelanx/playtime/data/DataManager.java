@@ -17,21 +17,40 @@
 package com.codelanx.playtime.data;
 
 import com.codelanx.playtime.Playtime;
-import com.codelanx.playtime.data.mysql.Data_MySQL;
-import com.codelanx.playtime.data.sqlite.Data_SQLite;
+import com.codelanx.playtime.event.EventHandler;
+import com.codelanx.playtime.player.NameCache;
 import com.codelanx.playtime.runnable.ConvertToRunnable;
+import com.codelanx.playtime.runnable.FlushRunnable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
+import org.bukkit.entity.Player;
 
 /**
  *
  * @since 1.3.0
  * @author 1Rogue
- * @version 1.4.0
+ * @version 2.0.0
  */
 public class DataManager {
 
     protected final Playtime plugin;
-    protected DataHandler data;
+    protected final TimeAccumulator accumulator = new TimeAccumulator();
+    protected final ResetBuffer resets = new ResetBuffer();
+    protected final FlushRunnable flusher;
+    protected final StatsCache cache;
+    protected final Leaderboard[] leaderboards = new Leaderboard[Timer.values().length];
+    protected final DataHandlerRegistry registry;
+    protected final AtomicBoolean converting = new AtomicBoolean();
+    protected volatile DataHandler data;
+    protected volatile ConvertToRunnable mirror;
 
     /**
      * The constuctor for DataManager.
@@ -45,6 +64,13 @@ public class DataManager {
      */
     public DataManager(Playtime p, boolean automatic) {
         this.plugin = p;
+        this.registry = new DataHandlerRegistry(this.plugin);
+        this.flusher = new FlushRunnable(this.plugin, this.accumulator, this.resets);
+        this.cache = new StatsCache(this.plugin, this);
+        int size = this.plugin.getConfigurationLoader().getInt("data.leaderboard.size");
+        for (Timer t : Timer.values()) {
+            this.leaderboards[t.ordinal()] = new Leaderboard(t, size > 0 ? size : 50);
+        }
         if (automatic) {
             startData();
         }
@@ -63,7 +89,10 @@ public class DataManager {
      */
     private void startData() {
         this.select(this.plugin.getConfigurationLoader().getString("data.manager"));
-        this.setup();
+        if (!this.setup()) {
+            this.plugin.getServer().getPluginManager().disablePlugin(this.plugin);
+            return;
+        }
         this.start();
 
     }
@@ -74,41 +103,378 @@ public class DataManager {
      * that isn't compatible.
      *
      * @since 1.3.0
-     * @version 1.4.0
+     * @version 2.0.0
      *
      * @param type The type of data manager to use
      */
     public void select(String type) {
+        this.data = this.createHandler(type);
+    }
+
+    /**
+     * Makes a new, unstarted data handler for a data type registered with the
+     * {@link DataHandlerRegistry}. Flatfile storage and unknown data types
+     * fall back to sqlite, as described in {@link #startData()}.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param type The type of data manager to make
+     * @return The new data handler
+     */
+    public DataHandler createHandler(String type) {
         type = type.toLowerCase();
-        if (type.equals("mysql")) {
-            this.data = new Data_MySQL(this.plugin);
-        } else {
-            this.data = new Data_SQLite(this.plugin);
-        }
-        if (type.equals("flatfile")) {
-            this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("data.manager.no-flat"));
+        DataHandlerProvider provider = this.registry.get(type);
+        if (provider == null) {
+            if (type.equals("flatfile")) {
+                this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("data.manager.no-flat"));
+            } else {
+                this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("data.manager.unknown", type));
+            }
+            provider = this.registry.get("sqlite");
         }
+        return provider.create(this.plugin);
+    }
+
+    /**
+     * Returns the data types that can be selected
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The data handler registry
+     */
+    public DataHandlerRegistry getRegistry() {
+        return this.registry;
     }
 
     /**
      * Runs the startup process for the data manager at hand.
      *
      * @since 1.3.0
-     * @version 1.3.0
+     * @version 2.0.0
+     *
+     * @return true if the data manager is ready to use
      */
-    public void setup() {
+    public boolean setup() {
         this.data.init();
-        this.data.verifyFormat();
+        return this.data.verifyFormat();
     }
 
     /**
-     * Starts the data updating process
+     * Starts the data updating process, the periodic flush of counted minutes
+     * to the database, and the loading of leaderboards, online players and
+     * known names
      *
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      */
     public void start() {
         this.data.startRunnables();
+        long interval = this.plugin.getConfigurationLoader().getInt("data.flush.interval");
+        interval = interval > 0 ? interval : 60L;
+        this.plugin.getExecutiveManager().runAsyncTaskRepeat(this.flusher, interval, interval);
+        for (Player p : this.plugin.getServer().getOnlinePlayers()) {
+            this.loadPlayer(p.getUniqueId());
+        }
+        for (Leaderboard board : this.leaderboards) {
+            this.rebuildLeaderboard(board);
+        }
+        this.plugin.getExecutiveManager().runAsyncTask(new Runnable() {
+            public void run() {
+                warmNames();
+            }
+        }, 0L);
+    }
+
+    /**
+     * Fills the name cache with every player in storage it does not already
+     * know, then saves it
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    private void warmNames() {
+        NameCache names = this.plugin.getNameCache();
+        Map<UUID, String> stored = this.data.getNames();
+        if (names == null || stored == null) {
+            return;
+        }
+        names.putAll(stored);
+        names.save();
+    }
+
+    /**
+     * Counts a minute for an online player, keeping the accumulator, stats
+     * cache, and leaderboards in step
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param name The player's name
+     * @param timers The timers to increment
+     */
+    public void addMinute(UUID uuid, String name, Timer... timers) {
+        this.accumulator.increment(uuid, name, timers);
+        this.cache.increment(uuid, timers);
+        EventHandler events = this.plugin.getEventHandler();
+        for (Timer t : timers) {
+            int value = this.cache.getOnlineValue(t, uuid);
+            if (value >= 0) {
+                this.leaderboards[t.ordinal()].update(uuid, name, value);
+                if (events != null) {
+                    events.tick(name, t, value - 1, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resets a player's timer. Memory is reset straight away, and the stored
+     * value is reset by the next flush, before any minutes counted since are
+     * written. Safe to call from the main thread.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param timer The timer to reset
+     */
+    public void resetTimer(UUID uuid, Timer timer) {
+        synchronized (this.resets) {
+            //the flusher drains both at once, so it never sees one without the other
+            this.accumulator.clear(uuid, timer);
+            this.resets.add(uuid, timer);
+        }
+        this.cache.reset(uuid, timer);
+        this.leaderboards[timer.ordinal()].reset(uuid);
+    }
+
+    /**
+     * Gets the top players for a timer, ordered from highest. Served from
+     * the in-memory leaderboard when possible, otherwise the database is
+     * queried and the leaderboard is queued for a rebuild.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param data The timer column (playtime, deathtime, or onlinetime)
+     * @param amount The amount of players to return
+     * @return A map of player names to values, ordered from highest
+     */
+    public Map<String, Integer> getTopPlayers(String data, byte amount) {
+        Leaderboard board = this.leaderboards[Timer.fromColumn(data).ordinal()];
+        if (board.isReady()) {
+            return board.getTop(amount);
+        }
+        this.rebuildLeaderboard(board);
+        return this.data.getTopPlayers(data, amount);
+    }
+
+    /**
+     * Gets a player's current value for a timer without blocking the calling
+     * thread. Cached values complete immediately.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param data The timer column (playtime, deathtime, or onlinetime)
+     * @param user The player's uuid
+     * @return A future completed with the value in minutes
+     */
+    public CompletableFuture<Integer> getValueAsync(final String data, final UUID user) {
+        int cached = this.cache.getOnlineValue(Timer.fromColumn(data), user);
+        if (cached >= 0) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        try {
+            return CompletableFuture.supplyAsync(new Supplier<Integer>() {
+                public Integer get() {
+                    return getValue(data, user);
+                }
+            }, this.plugin.getExecutiveManager().getAsyncExecutor());
+        } catch (RejectedExecutionException ex) {
+            return this.plugin.getExecutiveManager().rejected(ex);
+        }
+    }
+
+    /**
+     * Gets a player's current value for a timer by name without blocking the
+     * calling thread. The name is resolved through the {@link NameCache}
+     * first.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param data The timer column (playtime, deathtime, or onlinetime)
+     * @param name The player's name
+     * @return A future completed with the value in minutes
+     */
+    public CompletableFuture<Integer> getValueAsync(final String data, String name) {
+        CompletableFuture<UUID> lookup;
+        try {
+            lookup = this.plugin.getNameCache().lookup(name, this.plugin.getExecutiveManager().getAsyncExecutor());
+        } catch (RejectedExecutionException ex) {
+            return this.plugin.getExecutiveManager().rejected(ex);
+        }
+        return lookup.thenCompose(new Function<UUID, CompletableFuture<Integer>>() {
+            public CompletableFuture<Integer> apply(UUID user) {
+                return getValueAsync(data, user);
+            }
+        });
+    }
+
+    /**
+     * Gets the top players for a timer without blocking the calling thread.
+     * Completes immediately when the leaderboard can answer.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param data The timer column (playtime, deathtime, or onlinetime)
+     * @param amount The amount of players to return
+     * @return A future completed with the top players, ordered from highest
+     */
+    public CompletableFuture<Map<String, Integer>> getTopPlayersAsync(String data, byte amount) {
+        Leaderboard board = this.leaderboards[Timer.fromColumn(data).ordinal()];
+        if (board.isReady()) {
+            return CompletableFuture.completedFuture(board.getTop(amount));
+        }
+        this.rebuildLeaderboard(board);
+        try {
+            return this.data.getTopPlayersAsync(data, amount, this.plugin.getExecutiveManager().getAsyncExecutor());
+        } catch (RejectedExecutionException ex) {
+            return this.plugin.getExecutiveManager().rejected(ex);
+        }
+    }
+
+    /**
+     * Rebuilds a leaderboard from the database asynchronously
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param board The leaderboard to rebuild
+     */
+    private void rebuildLeaderboard(final Leaderboard board) {
+        if (!board.startRebuild()) {
+            return;
+        }
+        boolean queued = this.plugin.getExecutiveManager().runAsyncTask(new Runnable() {
+            public void run() {
+                List<Leaderboard.Entry> top = new ArrayList<Leaderboard.Entry>();
+                synchronized (flusher) {
+                    List<Leaderboard.Entry> stored = data.getTopEntries(board.getTimer().getColumn(), board.getCapacity());
+                    if (stored == null) {
+                        board.cancelRebuild();
+                        return;
+                    }
+                    for (Leaderboard.Entry e : stored) {
+                        int base = resets.isPending(e.getUUID(), board.getTimer()) ? 0 : e.getValue();
+                        int pending = accumulator.getPending(e.getUUID(), board.getTimer());
+                        top.add(base + pending == e.getValue() ? e : new Leaderboard.Entry(e.getUUID(), e.getName(), base + pending));
+                    }
+                }
+                board.rebuild(top);
+            }
+        }, 0L);
+        if (!queued) {
+            board.cancelRebuild();
+        }
+    }
+
+    /**
+     * Loads a player's values into the stats cache asynchronously
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     */
+    public void loadPlayer(final UUID uuid) {
+        final Object session = this.cache.join(uuid);
+        this.plugin.getExecutiveManager().runAsyncTask(new Runnable() {
+            public void run() {
+                cache.load(uuid, session);
+            }
+        }, 0L);
+    }
+
+    /**
+     * Gets a player's current value for a timer. Online players are answered
+     * from memory, offline players are read from the database and cached.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param data The timer column (playtime, deathtime, or onlinetime)
+     * @param user The player's uuid
+     * @return The timer value in minutes
+     */
+    public int getValue(String data, UUID user) {
+        return this.cache.getValue(Timer.fromColumn(data), user);
+    }
+
+    /**
+     * Gets the cache of player timer values
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The stats cache
+     */
+    public StatsCache getStatsCache() {
+        return this.cache;
+    }
+
+    /**
+     * Returns the runnable writing counted minutes to the database. Holding
+     * its lock keeps any flush from running.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The flusher
+     */
+    public FlushRunnable getFlusher() {
+        return this.flusher;
+    }
+
+    /**
+     * Writes all counted minutes to the database immediately, blocking until
+     * the flush is complete. Used on shutdown so no minutes are lost.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void flush() {
+        this.flusher.run();
+    }
+
+    /**
+     * Gets the in-memory store of minutes that have not been written to the
+     * database yet
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The minute accumulator
+     */
+    public TimeAccumulator getAccumulator() {
+        return this.accumulator;
+    }
+
+    /**
+     * Returns the resets that have not been written to the database yet
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The reset buffer
+     */
+    public ResetBuffer getResetBuffer() {
+        return this.resets;
     }
 
     /**
@@ -124,29 +490,129 @@ public class DataManager {
     }
 
     /**
-     * Starts the conversion process from one data type to another
+     * Starts copying every row into another data type while this one stays in
+     * use, then switches over to it once the copy is done. Nothing is done if
+     * a conversion or swap is already running.
      *
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      *
      * @param newType The new data type (mysql, sqlite, or flatfile)
      * @param players Any players to notify after the completion
+     * @return true if the conversion was started
      */
-    public void convertData(String newType, String... players) {
+    public boolean convertData(String newType, String... players) {
+        if (!this.converting.compareAndSet(false, true)) {
+            return false;
+        }
         this.data.startConversion(newType, players);
+        return true;
+    }
+
+    /**
+     * Switches over to another data type without copying anything to it.
+     * Minutes not yet written are written to the current data type first.
+     * Nothing is done if a conversion or swap is already running.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param newType The new data type (mysql, sqlite, or flatfile)
+     * @param players Any players to notify after the completion
+     * @return true if the swap was started
+     */
+    public boolean swapData(String newType, String... players) {
+        if (!this.converting.compareAndSet(false, true)) {
+            return false;
+        }
+        if (!this.plugin.getExecutiveManager().runAsyncTask(new ConvertToRunnable(newType, this.plugin, this.data.getName(), 0, false, players), 0L)) {
+            this.finishConversion();
+            return false;
+        }
+        return true;
     }
 
     /**
      * Executes the asynchronous converter for Playtime
      *
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      *
+     * @param oldType The data type being converted from (mysql or sqlite)
      * @param newType The new data type (mysql, sqlite, or flatfile)
-     * @param query The query to be used in the conversion process
-     * @param players Any players to notify after the completion
+     * @param rows The number of rows to convert, used to report progress
+     * @param players Any players to notify of progress and completion
+     */
+    public void convertTo(String oldType, String newType, int rows, String... players) {
+        if (!this.plugin.getExecutiveManager().runAsyncTask(new ConvertToRunnable(newType, this.plugin, oldType, rows, true, players), 0L)) {
+            this.finishConversion();
+        }
+    }
+
+    /**
+     * Returns whether a conversion or swap is running
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if the data type is being changed
+     */
+    public boolean isConverting() {
+        return this.converting.get();
+    }
+
+    /**
+     * Returns the conversion that flushed minutes are also written to, if any
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The running conversion, or null if flushes only go to the data
+     *         type in use
+     */
+    public ConvertToRunnable getMirror() {
+        return this.mirror;
+    }
+
+    /**
+     * Sets the conversion that flushed minutes are also written to. Must be
+     * called while holding the lock of {@link #getFlusher()}.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param mirror The running conversion, or null to stop mirroring
+     */
+    public void setMirror(ConvertToRunnable mirror) {
+        this.mirror = mirror;
+    }
+
+    /**
+     * Puts a new data handler in use in place of the current one. Must be
+     * called while holding the lock of {@link #getFlusher()}, so no flush is
+     * split across the two.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param handler The set up data handler to use from now on
+     * @return The data handler that was in use
+     */
+    public DataHandler cutover(DataHandler handler) {
+        DataHandler old = this.data;
+        this.data = handler;
+        return old;
+    }
+
+    /**
+     * Marks the running conversion or swap as finished, allowing another to
+     * start
+     *
+     * @since 2.0.0
+     * @version 2.0.0
      */
-    public void convertTo(String newType, String query, String... players) {
-        this.plugin.getExecutiveManager().runAsyncTask(new ConvertToRunnable(newType, plugin, query, players), 0L);
+    public void finishConversion() {
+        this.mirror = null;
+        this.converting.set(false);
     }
 }
@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * An in-memory, ranked index of the highest values of a single {@link Timer}.
+ * The index always holds the exact top players it knows about: a player only
+ * enters if they beat the lowest ranked entry, and an entry whose value drops
+ * is removed rather than re-ranked, since a player outside the index may now
+ * be ahead of it. Once the index shrinks below the amount a command can show,
+ * it needs to be rebuilt from the database. While the index holds every known
+ * player, any value is accepted and re-ranked.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class Leaderboard {
+
+    /** The most players a top command will ever ask for */
+    public static final int MAX_SHOWN = 10;
+    private final Timer timer;
+    private final int capacity;
+    private final TreeSet<Entry> ranked = new TreeSet<Entry>();
+    private final Map<UUID, Entry> entries = new HashMap<UUID, Entry>();
+    private boolean loaded = false;
+    private boolean complete = false;
+    private boolean rebuilding = false;
+
+    /**
+     * Constructor for {@link Leaderboard}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param timer The timer this leaderboard ranks
+     * @param capacity The number of players to keep ranked
+     */
+    public Leaderboard(Timer timer, int capacity) {
+        this.timer = timer;
+        this.capacity = Math.max(MAX_SHOWN, capacity);
+    }
+
+    /**
+     * Replaces the contents of the leaderboard, typically with the top rows
+     * from the database. If fewer rows than the capacity are provided, they
+     * are taken to be every player there is.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param top The entries to rank
+     */
+    public synchronized void rebuild(Collection<Entry> top) {
+        this.complete = top.size() < this.capacity;
+        this.ranked.clear();
+        this.entries.clear();
+        for (Entry e : top) {
+            this.put(e);
+        }
+        this.trim();
+        this.loaded = true;
+        this.rebuilding = false;
+    }
+
+    /**
+     * Offers a player's current value to the leaderboard
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param name The player's name
+     * @param value The player's current value for this leaderboard's timer
+     */
+    public synchronized void update(UUID uuid, String name, int value) {
+        if (!this.loaded) {
+            return;
+        }
+        Entry old = this.entries.get(uuid);
+        if (old != null) {
+            if (old.value == value && old.name.equals(name)) {
+                return;
+            }
+            this.ranked.remove(old);
+            this.entries.remove(uuid);
+            if (value < old.value && !this.complete) {
+                // someone outside the index may now be ranked higher
+                return;
+            }
+        } else if (!this.complete && (this.ranked.isEmpty() || value < this.ranked.last().value)) {
+            // we cannot tell how this player compares to those not indexed
+            return;
+        }
+        this.put(new Entry(uuid, name, value));
+        this.trim();
+    }
+
+    /**
+     * Sets a player's value back to zero, used when their timer is reset
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     */
+    public synchronized void reset(UUID uuid) {
+        Entry old = this.entries.get(uuid);
+        if (old != null) {
+            this.update(uuid, old.name, 0);
+        }
+    }
+
+    /**
+     * Marks the leaderboard as being rebuilt, so only one rebuild is queued
+     * at a time
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return false if a rebuild is already underway
+     */
+    public synchronized boolean startRebuild() {
+        if (this.rebuilding) {
+            return false;
+        }
+        this.rebuilding = true;
+        return true;
+    }
+
+    /**
+     * Clears the rebuilding flag after a rebuild could not be completed
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public synchronized void cancelRebuild() {
+        this.rebuilding = false;
+    }
+
+    /**
+     * Returns the highest ranked players, in order
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param amount The number of players to return
+     * @return A map of player names to values, ordered from highest
+     */
+    public synchronized Map<String, Integer> getTop(int amount) {
+        Map<String, Integer> back = new LinkedHashMap<String, Integer>();
+        Iterator<Entry> itr = this.ranked.iterator();
+        while (itr.hasNext() && back.size() < amount) {
+            Entry e = itr.next();
+            back.put(e.name, e.value);
+        }
+        return back;
+    }
+
+    /**
+     * Whether the leaderboard has been built and can still answer any top
+     * command exactly
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if the leaderboard can be used
+     */
+    public synchronized boolean isReady() {
+        return this.loaded && (this.complete || this.ranked.size() >= MAX_SHOWN);
+    }
+
+    /**
+     * Whether the leaderboard has been built at least once
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if loaded
+     */
+    public synchronized boolean isLoaded() {
+        return this.loaded;
+    }
+
+    /**
+     * Returns the timer this leaderboard ranks
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The ranked timer
+     */
+    public Timer getTimer() {
+        return this.timer;
+    }
+
+    /**
+     * Returns the number of players to keep ranked
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The leaderboard capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Adds an entry to both indexes
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param e The entry to add
+     */
+    private void put(Entry e) {
+        Entry old = this.entries.put(e.uuid, e);
+        if (old != null) {
+            this.ranked.remove(old);
+        }
+        this.ranked.add(e);
+    }
+
+    /**
+     * Drops the lowest entries until the leaderboard is within capacity
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    private void trim() {
+        while (this.ranked.size() > this.capacity) {
+            this.entries.remove(this.ranked.pollLast().uuid);
+            this.complete = false;
+        }
+    }
+
+    /**
+     * Copies the current entries of the leaderboard
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The ranked entries, highest first
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<Entry>(this.ranked);
+    }
+
+    /**
+     * A single ranked player
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    public static class Entry implements Comparable<Entry> {
+
+        private final UUID uuid;
+        private final String name;
+        private final int value;
+
+        public Entry(UUID uuid, String name, int value) {
+            this.uuid = uuid;
+            this.name = name;
+            this.value = value;
+        }
+
+        /**
+         * Returns the player's uuid
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @return The uuid
+         */
+        public UUID getUUID() {
+            return this.uuid;
+        }
+
+        /**
+         * Returns the player's name
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @return The name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Returns the player's value for the ranked timer
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @return The value in minutes
+         */
+        public int getValue() {
+            return this.value;
+        }
+
+        /**
+         * Orders entries from highest value to lowest, breaking ties by uuid
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param o The entry to compare to
+         * @return The comparison result
+         */
+        public int compareTo(Entry o) {
+            if (this.value != o.value) {
+                return this.value > o.value ? -1 : 1;
+            }
+            return this.uuid.compareTo(o.uuid);
+        }
+
+    }
+
+}
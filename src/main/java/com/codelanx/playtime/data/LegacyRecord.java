@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+/**
+ * A row still waiting on a uuid, kept in the legacy table by its id until the
+ * {@link com.codelanx.playtime.runnable.UUIDRunnable} can move it over
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class LegacyRecord {
+
+    private final int id;
+    private final String name;
+    private final int[] values;
+
+    /**
+     * Constructor for {@link LegacyRecord}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param id The id of the row
+     * @param name The player's name
+     * @param values The player's timer values, in {@link Timer} order
+     */
+    public LegacyRecord(int id, String name, int... values) {
+        this.id = id;
+        this.name = name;
+        this.values = values;
+    }
+
+    /**
+     * Returns the id of the row
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The row id
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Returns the player's name
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The player's name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the stored value of a timer
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param timer The timer to check
+     * @return The value in minutes
+     */
+    public int getValue(Timer timer) {
+        return this.values[timer.ordinal()];
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A single step in the layout of the database. Steps are applied in version
+ * order by a {@link SchemaMigrator}, each inside its own transaction, and must
+ * be safe to run again if a previous attempt was cut short.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public interface Migration {
+
+    /**
+     * Returns the schema version this step brings the database up to
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The version, starting from 1
+     */
+    public int getVersion();
+
+    /**
+     * Returns a short description of this step, used in logs and stored in
+     * the schema table
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The description of the step
+     */
+    public String getName();
+
+    /**
+     * Applies this step
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to apply the step with, already inside a
+     *            transaction
+     * @throws SQLException If the step could not be applied
+     */
+    public void apply(Connection con) throws SQLException;
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import java.util.UUID;
+
+/**
+ * A player's stored row, as handed between data types when converting
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class PlayerRecord {
+
+    private final UUID uuid;
+    private final String name;
+    private final int[] values;
+
+    /**
+     * Constructor for {@link PlayerRecord}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param name The player's last known name
+     * @param values The player's timer values, in {@link Timer} order
+     */
+    public PlayerRecord(UUID uuid, String name, int... values) {
+        this.uuid = uuid;
+        this.name = name;
+        this.values = values;
+    }
+
+    /**
+     * Returns the player's uuid
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The player's uuid
+     */
+    public UUID getUUID() {
+        return this.uuid;
+    }
+
+    /**
+     * Returns the player's last known name
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The player's name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the stored value of a timer
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param timer The timer to check
+     * @return The value in minutes
+     */
+    public int getValue(Timer timer) {
+        return this.values[timer.ordinal()];
+    }
+
+}
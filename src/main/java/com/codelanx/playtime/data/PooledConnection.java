@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.callable.UUIDFetcher;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A long-lived JDBC connection owned by a {@link ConnectionPool}. Prepared
+ * statements made through {@link #prepare(String)} are cached for the life of
+ * the connection, so each statement shape is only parsed once.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class PooledConnection {
+
+    private static final int MAX_STATEMENTS = 64;
+    private final Connection con;
+    private final ConnectionPool pool;
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (this.size() > MAX_STATEMENTS) {
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+    private volatile long lastUsed;
+    private volatile boolean leased = false;
+    private volatile boolean suspect = false;
+
+    PooledConnection(ConnectionPool pool, Connection con) {
+        this.pool = pool;
+        this.con = con;
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the underlying JDBC connection. This should never be closed
+     * directly, instead release it back to the pool with {@link #release()}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The raw connection
+     */
+    public Connection getConnection() {
+        return this.con;
+    }
+
+    /**
+     * Returns a cached prepared statement for the provided SQL, preparing it
+     * if this connection has not seen it before. Any previous parameters are
+     * cleared. The statement must not be closed by the caller.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param sql The parameterized SQL string
+     * @return The prepared statement
+     * @throws SQLException If the statement could not be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = this.statements.get(sql);
+        if (stmt == null || stmt.isClosed()) {
+            stmt = this.con.prepareStatement(sql);
+            this.statements.put(sql, stmt);
+            this.pool.recordStatement(false);
+        } else {
+            stmt.clearParameters();
+            this.pool.recordStatement(true);
+        }
+        return stmt;
+    }
+
+    /**
+     * Returns a cached prepared statement with the provided parameters bound
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param sql The parameterized SQL string
+     * @param params The parameters to bind, in order
+     * @return The prepared statement, ready to execute
+     * @throws SQLException If the statement could not be prepared
+     */
+    public PreparedStatement prepare(String sql, Object... params) throws SQLException {
+        return bind(this.prepare(sql), params);
+    }
+
+    /**
+     * Binds parameters to a prepared statement. {@link UUID} values are
+     * stored as their 16 raw bytes.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param stmt The statement to bind to
+     * @param params The parameters to bind, in order
+     * @return The same statement
+     * @throws SQLException If a parameter could not be bound
+     */
+    public static PreparedStatement bind(PreparedStatement stmt, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            if (params[i] instanceof UUID) {
+                stmt.setBytes(i + 1, UUIDFetcher.toBytes((UUID) params[i]));
+            } else {
+                stmt.setObject(i + 1, params[i]);
+            }
+        }
+        return stmt;
+    }
+
+    /**
+     * Closes a statement, ignoring any errors
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param stmt The statement to close
+     */
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException ex) {
+            // the connection will be validated on its next borrow anyway
+        }
+    }
+
+    /**
+     * Returns this connection to the pool it was borrowed from
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void release() {
+        this.pool.release(this);
+    }
+
+    /**
+     * Flags the connection as possibly broken, which forces a validation
+     * check before it is handed out again.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void markSuspect() {
+        this.suspect = true;
+    }
+
+    /**
+     * Whether the connection needs to be validated before use
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param validateAfter Time (in milliseconds) a connection may sit idle
+     *                      before needing validation
+     * @return true if a validation check should be made
+     */
+    boolean needsValidation(long validateAfter) {
+        return this.suspect || System.currentTimeMillis() - this.lastUsed > validateAfter;
+    }
+
+    /**
+     * Marks the connection as handed out
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return false if the connection was already leased
+     */
+    synchronized boolean lease() {
+        if (this.leased) {
+            return false;
+        }
+        this.leased = true;
+        this.suspect = false;
+        return true;
+    }
+
+    /**
+     * Marks the connection as returned
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return false if the connection was not leased
+     */
+    synchronized boolean unlease() {
+        if (!this.leased) {
+            return false;
+        }
+        this.leased = false;
+        this.lastUsed = System.currentTimeMillis();
+        return true;
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+/**
+ * The statement shapes run against the {@code playTime} table. The SQL for
+ * each {@link Timer} is built once, so callers only ever bind parameters and
+ * never concatenate user input into a query.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public enum Query {
+
+    /**
+     * Selects a single timer value for a uuid
+     */
+    SELECT_VALUE("SELECT `{timer}` FROM `playTime` WHERE `uuid`=?"),
+    /**
+     * Selects every timer value for a uuid, in {@link Timer} order
+     */
+    SELECT_ALL("SELECT `playtime`, `deathtime`, `onlinetime` FROM `playTime` WHERE `uuid`=?"),
+    /**
+     * Selects the highest values of a timer, takes the row limit
+     */
+    SELECT_TOP("SELECT `uuid`, `username`, `{timer}` FROM `playTime` ORDER BY `{timer}` DESC LIMIT ?"),
+    /**
+     * Selects the users with a timer between two values (inclusive)
+     */
+    SELECT_RANGE("SELECT `username`, `{timer}` FROM `playTime` WHERE `{timer}` BETWEEN ? AND ?"),
+    /**
+     * Selects the uuid and last known name of every row
+     */
+    SELECT_NAMES("SELECT `uuid`, `username` FROM `playTime`"),
+    /**
+     * Sets a timer back to zero for a uuid
+     */
+    RESET("UPDATE `playTime` SET `{timer}`=0 WHERE `uuid`=?"),
+    /**
+     * Adds accumulated minutes to every timer of an existing row, takes the
+     * username, the playtime, deathtime and onlinetime deltas, then the uuid
+     */
+    ADD_TIME("UPDATE `playTime` SET `username`=?, `playtime`=`playtime`+?, `deathtime`=`deathtime`+?, `onlinetime`=`onlinetime`+? WHERE `uuid`=?"),
+    /**
+     * Adds minutes to every timer of an existing row without touching the
+     * name, takes the playtime, deathtime and onlinetime values, then the uuid
+     */
+    MERGE_TIME("UPDATE `playTime` SET `playtime`=`playtime`+?, `deathtime`=`deathtime`+?, `onlinetime`=`onlinetime`+? WHERE `uuid`=?"),
+    /**
+     * Creates a row for a new player, takes the username, uuid, then the
+     * playtime, deathtime and onlinetime values
+     */
+    INSERT_USER("INSERT INTO `playTime` (`username`, `uuid`, `playtime`, `deathtime`, `onlinetime`) VALUES (?, ?, ?, ?, ?)");
+
+    private final String[] sql = new String[Timer.values().length];
+
+    private Query(String sql) {
+        for (Timer t : Timer.values()) {
+            this.sql[t.ordinal()] = sql.replace("{timer}", t.getColumn());
+        }
+    }
+
+    /**
+     * Returns the SQL for this statement shape using the provided timer
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param timer The timer to use
+     * @return The parameterized SQL string
+     */
+    public String getSQL(Timer timer) {
+        return this.sql[timer.ordinal()];
+    }
+
+    /**
+     * Returns the SQL for a statement shape that does not depend on a timer
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The parameterized SQL string
+     */
+    public String getSQL() {
+        return this.sql[0];
+    }
+
+}
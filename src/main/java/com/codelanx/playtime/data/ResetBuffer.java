@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Holds timer resets until they are written to the database with the next
+ * flush. A player's timer only needs resetting once no matter how many times
+ * it was reset in between, so repeated resets collapse into one.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class ResetBuffer {
+
+    private EnumMap<Timer, Set<UUID>> pending = ResetBuffer.empty();
+
+    /**
+     * Queues a reset of a player's timer
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param timer The timer to reset
+     */
+    public synchronized void add(UUID uuid, Timer timer) {
+        this.pending.get(timer).add(uuid);
+    }
+
+    /**
+     * Checks whether a player's stored timer is waiting to be reset
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param timer The timer to check
+     * @return true if the stored value is out of date and should be read as 0
+     */
+    public synchronized boolean isPending(UUID uuid, Timer timer) {
+        return this.pending.get(timer).contains(uuid);
+    }
+
+    /**
+     * Removes and returns every queued reset
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The players to reset, grouped by timer
+     */
+    public synchronized Map<Timer, Set<UUID>> drain() {
+        Map<Timer, Set<UUID>> back = this.pending;
+        this.pending = ResetBuffer.empty();
+        return back;
+    }
+
+    /**
+     * Queues resets that could not be written again
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param failed The resets to retry, grouped by timer
+     */
+    public synchronized void restore(Map<Timer, Set<UUID>> failed) {
+        for (Map.Entry<Timer, Set<UUID>> ent : failed.entrySet()) {
+            this.pending.get(ent.getKey()).addAll(ent.getValue());
+        }
+    }
+
+    /**
+     * Returns the number of resets waiting to be written
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Queued reset count
+     */
+    public synchronized int size() {
+        return ResetBuffer.count(this.pending);
+    }
+
+    /**
+     * Counts the resets in a group of resets
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param resets The resets, grouped by timer
+     * @return The total number of resets
+     */
+    public static int count(Map<Timer, Set<UUID>> resets) {
+        int back = 0;
+        for (Set<UUID> s : resets.values()) {
+            back += s.size();
+        }
+        return back;
+    }
+
+    /**
+     * Makes an empty set of resets for every timer
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The empty resets
+     */
+    private static EnumMap<Timer, Set<UUID>> empty() {
+        EnumMap<Timer, Set<UUID>> back = new EnumMap<Timer, Set<UUID>>(Timer.class);
+        for (Timer t : Timer.values()) {
+            back.put(t, new HashSet<UUID>());
+        }
+        return back;
+    }
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.callable.UUIDFetcher;
+import com.codelanx.playtime.data.TimeAccumulator.Delta;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The writes and bulk transfers shared by the SQL data types. Subclasses only
+ * decide how a connection is borrowed for reading and for writing; every
+ * statement here is the same for each database.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public abstract class SQLDataHandler implements DataHandler {
+
+    private static final String COUNT = "SELECT COUNT(*) FROM `playTime`";
+    private static final String SELECT = "SELECT `username`, `uuid`, `playtime`, `deathtime`, `onlinetime` FROM `playTime`";
+    private static final String SELECT_FIRST = SELECT + " ORDER BY `uuid` LIMIT ?";
+    private static final String SELECT_AFTER = SELECT + " WHERE `uuid` > ? ORDER BY `uuid` LIMIT ?";
+    private static final String SELECT_LEGACY = "SELECT `id`, `username`, `playtime`, `deathtime`, `onlinetime` FROM `" + BinaryKeyMigration.LEGACY_TABLE + "` WHERE `id` > ? ORDER BY `id` LIMIT ?";
+    private static final String INSERT_LEGACY = "INSERT INTO `" + BinaryKeyMigration.LEGACY_TABLE + "` (`id`, `username`, `playtime`, `deathtime`, `onlinetime`) VALUES (?, ?, ?, ?, ?)";
+    private static final String DELETE_LEGACY = "DELETE FROM `" + BinaryKeyMigration.LEGACY_TABLE + "` WHERE `id`=?";
+    protected final Playtime plugin;
+
+    /**
+     * Constructor for {@link SQLDataHandler}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     */
+    protected SQLDataHandler(Playtime plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Runs work on a connection that may only be read from
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param <T> The type returned by the work
+     * @param work The work to run
+     * @return The result of the work
+     * @throws SQLException If the work failed or no connection was available
+     */
+    protected abstract <T> T read(Work<T> work) throws SQLException;
+
+    /**
+     * Runs work on a connection that may be written to
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param <T> The type returned by the work
+     * @param work The work to run
+     * @return The result of the work
+     * @throws SQLException If the work failed or no connection was available
+     */
+    protected abstract <T> T write(Work<T> work) throws SQLException;
+
+    /**
+     * Returns the statement emptying a table
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param table The table to empty
+     * @return The statement
+     */
+    protected String getClearStatement(String table) {
+        return "DELETE FROM `" + table + "`";
+    }
+
+    public void reset(final Map<Timer, Set<UUID>> reset) throws SQLException {
+        if (ResetBuffer.count(reset) == 0) {
+            return;
+        }
+        this.transaction(new Work<Void>() {
+            public Void run(PooledConnection con) throws SQLException {
+                for (Map.Entry<Timer, Set<UUID>> ent : reset.entrySet()) {
+                    if (ent.getValue().isEmpty()) {
+                        continue;
+                    }
+                    PreparedStatement stmt = con.prepare(Query.RESET.getSQL(ent.getKey()));
+                    try {
+                        for (UUID uuid : ent.getValue()) {
+                            PooledConnection.bind(stmt, uuid);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    } catch (SQLException ex) {
+                        stmt.clearBatch();
+                        throw ex;
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    public void write(final List<Delta> batch) throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        this.transaction(new Work<Void>() {
+            public Void run(PooledConnection con) throws SQLException {
+                PreparedStatement update = con.prepare(Query.ADD_TIME.getSQL());
+                PreparedStatement insert = con.prepare(Query.INSERT_USER.getSQL());
+                try {
+                    for (Delta d : batch) {
+                        PooledConnection.bind(update, d.getName(),
+                                d.getValue(Timer.PLAYTIME), d.getValue(Timer.DEATHTIME), d.getValue(Timer.ONLINETIME),
+                                d.getUUID());
+                        update.addBatch();
+                    }
+                    int[] counts = update.executeBatch();
+                    boolean missing = false;
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] == 0) {
+                            Delta d = batch.get(i);
+                            PooledConnection.bind(insert, d.getName(), d.getUUID(),
+                                    d.getValue(Timer.PLAYTIME), d.getValue(Timer.DEATHTIME), d.getValue(Timer.ONLINETIME));
+                            insert.addBatch();
+                            missing = true;
+                        }
+                    }
+                    if (missing) {
+                        insert.executeBatch();
+                    }
+                } catch (SQLException ex) {
+                    update.clearBatch();
+                    insert.clearBatch();
+                    throw ex;
+                }
+                return null;
+            }
+        });
+    }
+
+    public int count() throws SQLException {
+        return this.read(new Work<Integer>() {
+            public Integer run(PooledConnection con) throws SQLException {
+                ResultSet ret = con.prepare(COUNT).executeQuery();
+                try {
+                    return ret.next() ? ret.getInt(1) : 0;
+                } finally {
+                    ret.close();
+                }
+            }
+        });
+    }
+
+    public List<PlayerRecord> exportPlayers(final UUID after, final int limit) throws SQLException {
+        return this.read(new Work<List<PlayerRecord>>() {
+            public List<PlayerRecord> run(PooledConnection con) throws SQLException {
+                List<PlayerRecord> back = new ArrayList<PlayerRecord>();
+                ResultSet ret = (after == null ? con.prepare(SELECT_FIRST, limit) : con.prepare(SELECT_AFTER, after, limit)).executeQuery();
+                try {
+                    while (ret.next()) {
+                        back.add(new PlayerRecord(UUIDFetcher.fromBytes(ret.getBytes(2)), ret.getString(1), ret.getInt(3), ret.getInt(4), ret.getInt(5)));
+                    }
+                } finally {
+                    ret.close();
+                }
+                return back;
+            }
+        });
+    }
+
+    public void importPlayers(final List<PlayerRecord> players) throws SQLException {
+        if (players.isEmpty()) {
+            return;
+        }
+        this.transaction(new Work<Void>() {
+            public Void run(PooledConnection con) throws SQLException {
+                PreparedStatement insert = con.prepare(Query.INSERT_USER.getSQL());
+                try {
+                    for (PlayerRecord p : players) {
+                        PooledConnection.bind(insert, p.getName(), p.getUUID(),
+                                p.getValue(Timer.PLAYTIME), p.getValue(Timer.DEATHTIME), p.getValue(Timer.ONLINETIME));
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                } catch (SQLException ex) {
+                    insert.clearBatch();
+                    throw ex;
+                }
+                return null;
+            }
+        });
+    }
+
+    public List<LegacyRecord> exportLegacy(final int after, final int limit) throws SQLException {
+        return this.read(new Work<List<LegacyRecord>>() {
+            public List<LegacyRecord> run(PooledConnection con) throws SQLException {
+                List<LegacyRecord> back = new ArrayList<LegacyRecord>();
+                ResultSet ret = con.prepare(SELECT_LEGACY, after, limit).executeQuery();
+                try {
+                    while (ret.next()) {
+                        back.add(new LegacyRecord(ret.getInt(1), ret.getString(2), ret.getInt(3), ret.getInt(4), ret.getInt(5)));
+                    }
+                } finally {
+                    ret.close();
+                }
+                return back;
+            }
+        });
+    }
+
+    public void importLegacy(final List<LegacyRecord> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        this.transaction(new Work<Void>() {
+            public Void run(PooledConnection con) throws SQLException {
+                PreparedStatement insert = con.prepare(INSERT_LEGACY);
+                try {
+                    for (LegacyRecord r : rows) {
+                        PooledConnection.bind(insert, r.getId(), r.getName(),
+                                r.getValue(Timer.PLAYTIME), r.getValue(Timer.DEATHTIME), r.getValue(Timer.ONLINETIME));
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                } catch (SQLException ex) {
+                    insert.clearBatch();
+                    throw ex;
+                }
+                return null;
+            }
+        });
+    }
+
+    public int moveLegacy(final Map<String, UUID> resolved, final List<LegacyRecord> batch) throws SQLException {
+        if (resolved.isEmpty()) {
+            return 0;
+        }
+        return this.transaction(new Work<Integer>() {
+            public Integer run(PooledConnection con) throws SQLException {
+                PreparedStatement merge = con.prepare(Query.MERGE_TIME.getSQL());
+                PreparedStatement insert = con.prepare(Query.INSERT_USER.getSQL());
+                PreparedStatement delete = con.prepare(DELETE_LEGACY);
+                int moved = 0;
+                try {
+                    for (LegacyRecord r : batch) {
+                        UUID uuid = resolved.get(r.getName());
+                        if (uuid == null) {
+                            continue;
+                        }
+                        int play = r.getValue(Timer.PLAYTIME);
+                        int death = r.getValue(Timer.DEATHTIME);
+                        int online = r.getValue(Timer.ONLINETIME);
+                        if (PooledConnection.bind(merge, play, death, online, uuid).executeUpdate() == 0) {
+                            PooledConnection.bind(insert, r.getName(), uuid, play, death, online).executeUpdate();
+                        }
+                        PooledConnection.bind(delete, r.getId()).addBatch();
+                        moved++;
+                    }
+                    delete.executeBatch();
+                } catch (SQLException ex) {
+                    delete.clearBatch();
+                    throw ex;
+                }
+                return moved;
+            }
+        });
+    }
+
+    public void clear() throws SQLException {
+        this.transaction(new Work<Void>() {
+            public Void run(PooledConnection con) throws SQLException {
+                Statement stmt = con.getConnection().createStatement();
+                try {
+                    stmt.executeUpdate(getClearStatement("playTime"));
+                    stmt.executeUpdate(getClearStatement(BinaryKeyMigration.LEGACY_TABLE));
+                } finally {
+                    stmt.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Runs work on a writable connection inside a single transaction, which
+     * is rolled back if the work fails
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param <T> The type returned by the work
+     * @param work The work to run
+     * @return The result of the work
+     * @throws SQLException If the work failed
+     */
+    private <T> T transaction(final Work<T> work) throws SQLException {
+        return this.write(new Work<T>() {
+            public T run(PooledConnection con) throws SQLException {
+                Connection raw = con.getConnection();
+                raw.setAutoCommit(false);
+                try {
+                    T back = work.run(con);
+                    raw.commit();
+                    return back;
+                } catch (SQLException ex) {
+                    raw.rollback();
+                    throw ex;
+                } finally {
+                    raw.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    /**
+     * A unit of work run on a borrowed connection
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     *
+     * @param <T> The type of result the work returns
+     */
+    protected static interface Work<T> {
+
+        /**
+         * Runs the work. Statements from {@link PooledConnection#prepare}
+         * are cached and must not be closed.
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param con The borrowed connection
+         * @return The result of the work
+         * @throws SQLException If the work failed
+         */
+        public T run(PooledConnection con) throws SQLException;
+
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.Playtime;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Brings the database up to the latest layout. The version of the layout is
+ * kept in {@code playTime_schema}, so a database that is already current costs
+ * a single query on startup. Pending {@link Migration} steps are applied in
+ * order, each in its own transaction, and recorded as they succeed.
+ *
+ * Note that MySQL commits implicitly around table changes, so a step that
+ * alters tables is only atomic on SQLite. Steps are written to be safe to run
+ * again for this reason.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class SchemaMigrator {
+
+    /** The table holding the applied schema versions */
+    public static final String SCHEMA_TABLE = "playTime_schema";
+    private static final String CREATE = "CREATE TABLE `" + SCHEMA_TABLE + "` (`version` INTEGER NOT NULL PRIMARY KEY, `name` VARCHAR(64) NOT NULL, `applied` BIGINT NOT NULL)";
+    private static final String SELECT = "SELECT MAX(`version`) FROM `" + SCHEMA_TABLE + "`";
+    private static final String INSERT = "INSERT INTO `" + SCHEMA_TABLE + "` (`version`, `name`, `applied`) VALUES (?, ?, ?)";
+    private final Playtime plugin;
+    private final List<Migration> migrations;
+
+    /**
+     * Constructor for {@link SchemaMigrator}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param migrations Every step of the layout, in any order
+     */
+    public SchemaMigrator(Playtime plugin, List<Migration> migrations) {
+        this.plugin = plugin;
+        this.migrations = new ArrayList<Migration>(migrations);
+        Collections.sort(this.migrations, new Comparator<Migration>() {
+            public int compare(Migration o1, Migration o2) {
+                return Integer.compare(o1.getVersion(), o2.getVersion());
+            }
+        });
+    }
+
+    /**
+     * Applies every step newer than the database's current version
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to migrate with
+     * @return The number of steps applied
+     * @throws SQLException If the version could not be read, or a step failed.
+     *                      Steps applied before the failing one are kept.
+     */
+    public int migrate(Connection con) throws SQLException {
+        int current = this.getVersion(con);
+        int applied = 0;
+        for (Migration m : this.migrations) {
+            if (m.getVersion() <= current) {
+                continue;
+            }
+            this.plugin.getLogger().info(this.plugin.getCipher().getString("data.migration.applying", m.getVersion(), m.getName()));
+            con.setAutoCommit(false);
+            try {
+                m.apply(con);
+                PreparedStatement stmt = con.prepareStatement(INSERT);
+                try {
+                    PooledConnection.bind(stmt, m.getVersion(), m.getName(), System.currentTimeMillis()).executeUpdate();
+                } finally {
+                    stmt.close();
+                }
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw new SQLException("Schema migration " + m.getVersion() + " (" + m.getName() + ") failed", ex);
+            } finally {
+                con.setAutoCommit(true);
+            }
+            current = m.getVersion();
+            applied++;
+        }
+        if (this.plugin.getDebug() >= 1) {
+            this.plugin.getLogger().info(this.plugin.getCipher().getString("data.migration.current", current));
+        }
+        return applied;
+    }
+
+    /**
+     * Reads the current schema version, creating the schema table if this is
+     * the first time the database has been migrated
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to read with
+     * @return The current version, or 0 if no step has been applied
+     * @throws SQLException If the version could not be read
+     */
+    public int getVersion(Connection con) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery(SELECT);
+            try {
+                return rs.next() ? rs.getInt(1) : 0;
+            } finally {
+                rs.close();
+            }
+        } catch (SQLException ex) {
+            if (SchemaMigrator.hasTable(con, SCHEMA_TABLE)) {
+                throw ex;
+            }
+            stmt.executeUpdate(CREATE);
+            return 0;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Checks whether a table exists
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to check with
+     * @param table The name of the table
+     * @return true if the table exists
+     * @throws SQLException If the database could not be inspected
+     */
+    public static boolean hasTable(Connection con, String table) throws SQLException {
+        ResultSet rs = con.getMetaData().getTables(con.getCatalog(), null, table, null);
+        try {
+            return rs.next();
+        } finally {
+            rs.close();
+        }
+    }
+
+    /**
+     * Checks whether a table has a column
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param con The connection to check with
+     * @param table The name of the table
+     * @param column The name of the column
+     * @return true if the column exists
+     * @throws SQLException If the database could not be inspected
+     */
+    public static boolean hasColumn(Connection con, String table, String column) throws SQLException {
+        ResultSet rs = con.getMetaData().getColumns(con.getCatalog(), null, table, column);
+        try {
+            return rs.next();
+        } finally {
+            rs.close();
+        }
+    }
+
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.Playtime;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Level;
+
+/**
+ * Holds the current timer values of players in memory. Online players are
+ * loaded when they join and kept current by the minute ticker, while offline
+ * lookups are read from the database once and kept in a bounded LRU that
+ * expires entries after a configurable time.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class StatsCache {
+
+    private final Playtime plugin;
+    private final DataManager manager;
+    private final long ttl;
+    private final ConcurrentMap<UUID, AtomicIntegerArray> online = new ConcurrentHashMap<UUID, AtomicIntegerArray>();
+    private final ConcurrentMap<UUID, Object> sessions = new ConcurrentHashMap<UUID, Object>();
+    private final Map<UUID, Entry> offline;
+
+    /**
+     * Constructor for {@link StatsCache}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param manager The {@link DataManager} that owns this cache
+     */
+    public StatsCache(Playtime plugin, DataManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+        final int size = plugin.getConfigurationLoader().getInt("data.cache.size");
+        long expire = plugin.getConfigurationLoader().getInt("data.cache.ttl");
+        this.ttl = TimeUnit.SECONDS.toMillis(expire > 0 ? expire : 300);
+        this.offline = new LinkedHashMap<UUID, Entry>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                return this.size() > (size > 0 ? size : 500);
+            }
+        };
+    }
+
+    /**
+     * Returns a player's current value for a timer, reading it from the
+     * database if the player is not cached
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param timer The timer to look up
+     * @param uuid The player's uuid
+     * @return The timer value in minutes, or 0 if it could not be read
+     */
+    public int getValue(Timer timer, UUID uuid) {
+        AtomicIntegerArray values = this.online.get(uuid);
+        if (values != null) {
+            return values.get(timer.ordinal());
+        }
+        synchronized (this.offline) {
+            Entry e = this.offline.get(uuid);
+            if (e != null) {
+                if (!e.isExpired()) {
+                    return e.values.get(timer.ordinal());
+                }
+                this.offline.remove(uuid);
+            }
+        }
+        values = this.fetch(uuid);
+        if (values == null) {
+            return 0;
+        }
+        synchronized (this.offline) {
+            if (!this.online.containsKey(uuid)) {
+                if (this.sessions.containsKey(uuid)) {
+                    //online, but loading them failed
+                    this.online.put(uuid, values);
+                } else {
+                    this.offline.put(uuid, new Entry(values, this.ttl));
+                }
+            }
+        }
+        return values.get(timer.ordinal());
+    }
+
+    /**
+     * Returns the value of a timer for a loaded online player, without ever
+     * touching the database
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param timer The timer to look up
+     * @param uuid The player's uuid
+     * @return The timer value in minutes, or -1 if the player is not loaded
+     */
+    public int getOnlineValue(Timer timer, UUID uuid) {
+        AtomicIntegerArray values = this.online.get(uuid);
+        return values == null ? -1 : values.get(timer.ordinal());
+    }
+
+    /**
+     * Starts the session of a player that has come online. Must be called
+     * when they join, before their values are loaded.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @return The session, to be passed to {@link #load(UUID, Object)}
+     */
+    public Object join(UUID uuid) {
+        Object session = new Object();
+        this.sessions.put(uuid, session);
+        return session;
+    }
+
+    /**
+     * Loads a player that has come online. Reuses their offline entry if it
+     * is still fresh, otherwise reads it from the database. If the database
+     * cannot be read nothing is cached, and the next lookup tries again.
+     * Nothing is cached either if the session ended while loading, so a
+     * player that quits before this finishes is not left cached as online.
+     * This blocks on the database, so it should not be called on the main
+     * thread.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param session The session returned by {@link #join(UUID)}
+     */
+    public void load(UUID uuid, Object session) {
+        synchronized (this.offline) {
+            if (this.sessions.get(uuid) != session) {
+                return;
+            }
+            Entry e = this.offline.remove(uuid);
+            if (e != null && !e.isExpired()) {
+                this.online.put(uuid, e.values);
+                return;
+            }
+        }
+        AtomicIntegerArray values = this.fetch(uuid);
+        if (values == null) {
+            return;
+        }
+        synchronized (this.offline) {
+            if (this.sessions.get(uuid) == session) {
+                this.online.putIfAbsent(uuid, values);
+            }
+        }
+    }
+
+    /**
+     * Ends a player's session, moving them into the expiring LRU
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     */
+    public void unload(UUID uuid) {
+        synchronized (this.offline) {
+            this.sessions.remove(uuid);
+            AtomicIntegerArray values = this.online.remove(uuid);
+            if (values != null) {
+                this.offline.put(uuid, new Entry(values, this.ttl));
+            }
+        }
+    }
+
+    /**
+     * Adds a minute to the provided timers of an online player
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param timers The timers to increment
+     */
+    public void increment(UUID uuid, Timer... timers) {
+        AtomicIntegerArray values = this.online.get(uuid);
+        if (values != null) {
+            for (Timer t : timers) {
+                values.incrementAndGet(t.ordinal());
+            }
+        }
+    }
+
+    /**
+     * Sets a cached timer back to zero
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param timer The timer being reset
+     */
+    public void reset(UUID uuid, Timer timer) {
+        synchronized (this.offline) {
+            AtomicIntegerArray values = this.online.get(uuid);
+            if (values == null) {
+                Entry e = this.offline.get(uuid);
+                values = e == null ? null : e.values;
+            }
+            if (values != null) {
+                values.set(timer.ordinal(), 0);
+            }
+        }
+    }
+
+    /**
+     * Empties the cache
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void clear() {
+        synchronized (this.offline) {
+            this.online.clear();
+            this.offline.clear();
+        }
+    }
+
+    /**
+     * Reads a player's values from the database, plus any minutes counted
+     * since the last flush. Holds the flush lock so minutes cannot be counted
+     * twice, or missed, while moving from the accumulator to the database.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @return The player's current values, or null if they could not be read
+     */
+    private AtomicIntegerArray fetch(UUID uuid) {
+        AtomicIntegerArray values = new AtomicIntegerArray(Timer.values().length);
+        synchronized (this.manager.flusher) {
+            int[] stored;
+            try {
+                stored = this.manager.getDataHandler().getValues(uuid);
+            } catch (SQLException ex) {
+                //a player missing from the database is new, but a failed read is not
+                this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? ex : "null");
+                return null;
+            }
+            for (Timer t : Timer.values()) {
+                int base = stored == null || this.manager.resets.isPending(uuid, t) ? 0 : stored[t.ordinal()];
+                values.set(t.ordinal(), base + this.manager.getAccumulator().getPending(uuid, t));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The values of an offline player, along with when they expire
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    private static class Entry {
+
+        private final AtomicIntegerArray values;
+        private final long expires;
+
+        private Entry(AtomicIntegerArray values, long ttl) {
+            this.values = values;
+            this.expires = System.currentTimeMillis() + ttl;
+        }
+
+        /**
+         * Whether this entry should be read from the database again
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @return true if the entry is past its time to live
+         */
+        private boolean isExpired() {
+            return System.currentTimeMillis() > this.expires;
+        }
+
+    }
+
+}
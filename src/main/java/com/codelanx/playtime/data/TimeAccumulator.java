@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Counts minutes for online players in memory until they are flushed to the
+ * database. Players are spread over a set of independently locked stripes, so
+ * the minute tick, resets and flushes rarely contend with each other.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class TimeAccumulator {
+
+    private static final int STRIPES = 16;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public TimeAccumulator() {
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Adds a minute to each of the provided timers for a player
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param name The player's current name
+     * @param timers The timers to increment
+     */
+    public void increment(UUID uuid, String name, Timer... timers) {
+        Stripe s = this.getStripe(uuid);
+        synchronized (s) {
+            Delta d = s.deltas.get(uuid);
+            if (d == null) {
+                d = new Delta(uuid, name);
+                s.deltas.put(uuid, d);
+            }
+            d.name = name;
+            for (Timer t : timers) {
+                d.values[t.ordinal()]++;
+            }
+        }
+    }
+
+    /**
+     * Discards any unflushed minutes for a player's timer, used when the
+     * timer is reset in the database
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param timer The timer being reset
+     */
+    public void clear(UUID uuid, Timer timer) {
+        Stripe s = this.getStripe(uuid);
+        synchronized (s) {
+            Delta d = s.deltas.get(uuid);
+            if (d != null) {
+                d.values[timer.ordinal()] = 0;
+            }
+        }
+    }
+
+    /**
+     * Removes and returns every pending delta. If the returned deltas cannot
+     * be written, they must be handed back with {@link #restore(Collection, ResetBuffer)}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return All unflushed deltas
+     */
+    public List<Delta> drain() {
+        List<Delta> back = new ArrayList<Delta>();
+        for (Stripe s : this.stripes) {
+            Map<UUID, Delta> old;
+            synchronized (s) {
+                if (s.deltas.isEmpty()) {
+                    continue;
+                }
+                old = s.deltas;
+                s.deltas = new HashMap<UUID, Delta>();
+            }
+            back.addAll(old.values());
+        }
+        return back;
+    }
+
+    /**
+     * Merges deltas that failed to flush back into the accumulator, so they
+     * are retried on the next flush. Minutes for a timer that has been reset
+     * since the deltas were drained are dropped, as the reset must win over
+     * them. Must be called while holding the lock of the {@link ResetBuffer},
+     * so no reset can be queued partway through. The deltas are taken over
+     * and must not be used afterwards.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param failed The deltas to put back
+     * @param resets The resets queued since the deltas were drained
+     */
+    public void restore(Collection<Delta> failed, ResetBuffer resets) {
+        for (Delta f : failed) {
+            for (Timer t : Timer.values()) {
+                if (resets.isPending(f.uuid, t)) {
+                    f.values[t.ordinal()] = 0;
+                }
+            }
+            Stripe s = this.getStripe(f.uuid);
+            synchronized (s) {
+                Delta d = s.deltas.get(f.uuid);
+                if (d == null) {
+                    s.deltas.put(f.uuid, f);
+                } else {
+                    for (int i = 0; i < d.values.length; i++) {
+                        d.values[i] += f.values[i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the unflushed minutes for a player's timer
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param timer The timer to check
+     * @return Minutes not yet written to the database
+     */
+    public int getPending(UUID uuid, Timer timer) {
+        Stripe s = this.getStripe(uuid);
+        synchronized (s) {
+            Delta d = s.deltas.get(uuid);
+            return d == null ? 0 : d.values[timer.ordinal()];
+        }
+    }
+
+    /**
+     * Returns the number of players with unflushed minutes
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Pending player count
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe s : this.stripes) {
+            synchronized (s) {
+                size += s.deltas.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the stripe responsible for a uuid
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The uuid to look up
+     * @return The relevant stripe
+     */
+    private Stripe getStripe(UUID uuid) {
+        int h = uuid.hashCode();
+        return this.stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * A single lock and the deltas it guards
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    private static class Stripe {
+
+        private Map<UUID, Delta> deltas = new HashMap<UUID, Delta>();
+
+    }
+
+    /**
+     * Minutes accumulated for one player since the last flush
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    public static class Delta {
+
+        private final UUID uuid;
+        private final int[] values = new int[Timer.values().length];
+        private String name;
+
+        private Delta(UUID uuid, String name) {
+            this.uuid = uuid;
+            this.name = name;
+        }
+
+        /**
+         * Returns the uuid of the player
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @return The player's uuid
+         */
+        public UUID getUUID() {
+            return this.uuid;
+        }
+
+        /**
+         * Returns the last known name of the player
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @return The player's name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Returns the minutes accumulated for a timer
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param timer The timer to check
+         * @return Accumulated minutes
+         */
+        public int getValue(Timer timer) {
+            return this.values[timer.ordinal()];
+        }
+
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data;
+
+import com.codelanx.playtime.config.ConfigurationLoader;
+
+/**
+ * The timers tracked by Playtime, each of which maps to a column in the
+ * {@code playTime} table. Only these column names are ever placed into SQL
+ * strings.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public enum Timer {
+
+    PLAYTIME("playtime", null),
+    DEATHTIME("deathtime", "check.death-time"),
+    ONLINETIME("onlinetime", "check.online-time");
+
+    private final String column;
+    private final String option;
+
+    private Timer(String column, String option) {
+        this.column = column;
+        this.option = option;
+    }
+
+    /**
+     * Returns the column name for this timer
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The column name, all lowercase
+     */
+    public String getColumn() {
+        return this.column;
+    }
+
+    /**
+     * Returns whether this timer is being tracked according to the config
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param config The configuration to check against
+     * @return true if the timer is enabled
+     */
+    public boolean isEnabled(ConfigurationLoader config) {
+        return this.option == null || config.getBoolean(this.option);
+    }
+
+    /**
+     * Gets a timer by its column name
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param column The column name, case-insensitive
+     * @return The relevant timer
+     * @throws IllegalArgumentException If no timer uses that column
+     */
+    public static Timer fromColumn(String column) {
+        for (Timer t : Timer.values()) {
+            if (t.column.equalsIgnoreCase(column)) {
+                return t;
+            }
+        }
+        throw new IllegalArgumentException("Unknown timer '" + column + "'");
+    }
+
+}
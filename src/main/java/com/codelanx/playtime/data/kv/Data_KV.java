@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data.kv;
+
+import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.data.ConnectionPool;
+import com.codelanx.playtime.data.DataHandler;
+import com.codelanx.playtime.data.Leaderboard;
+import com.codelanx.playtime.data.LegacyRecord;
+import com.codelanx.playtime.data.PlayerRecord;
+import com.codelanx.playtime.data.TimeAccumulator.Delta;
+import com.codelanx.playtime.data.Timer;
+import com.codelanx.playtime.runnable.AddRunnable;
+import com.codelanx.playtime.runnable.StartConvertRunnable;
+import com.codelanx.playtime.runnable.UUIDRunnable;
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.logging.Level;
+
+/**
+ * Local key-value Data manager, backed by a {@link KVStore}. Every player is
+ * held in memory, so lookups never touch the disk. See DataHandler for
+ * information about each method.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class Data_KV implements DataHandler {
+
+    private static final String FILE = "players.kv";
+    private final Playtime plugin;
+    private KVStore store;
+    private ScheduledFuture<?> compactor;
+
+    public Data_KV(Playtime plugin) {
+        this.plugin = plugin;
+    }
+
+    public String getName() {
+        return "kv";
+    }
+
+    public int getValue(String data, UUID user) {
+        PlayerRecord p = this.store.get(user);
+        return p == null ? 0 : p.getValue(Timer.fromColumn(data));
+    }
+
+    public int[] getValues(UUID user) {
+        PlayerRecord p = this.store.get(user);
+        if (p == null) {
+            return null;
+        }
+        int[] ret = new int[Timer.values().length];
+        for (Timer t : Timer.values()) {
+            ret[t.ordinal()] = p.getValue(t);
+        }
+        return ret;
+    }
+
+    public Map<String, Integer> getTopPlayers(String data, byte amount) {
+        Timer timer = Timer.fromColumn(data);
+        Map<String, Integer> players = new LinkedHashMap<String, Integer>();
+        for (PlayerRecord p : this.top(timer, amount)) {
+            players.put(p.getName(), p.getValue(timer));
+        }
+        return players;
+    }
+
+    public List<Leaderboard.Entry> getTopEntries(String data, int amount) {
+        Timer timer = Timer.fromColumn(data);
+        List<Leaderboard.Entry> entries = new ArrayList<Leaderboard.Entry>();
+        for (PlayerRecord p : this.top(timer, amount)) {
+            entries.add(new Leaderboard.Entry(p.getUUID(), p.getName(), p.getValue(timer)));
+        }
+        return entries;
+    }
+
+    /**
+     * Picks out the highest values of a timer, keeping only as many players
+     * as were asked for while looking through the rest
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param timer The timer to rank by
+     * @param amount The amount of players to return
+     * @return The players ordered from highest
+     */
+    private List<PlayerRecord> top(final Timer timer, int amount) {
+        List<PlayerRecord> back = new ArrayList<PlayerRecord>();
+        if (amount <= 0) {
+            return back;
+        }
+        Comparator<PlayerRecord> order = new Comparator<PlayerRecord>() {
+            public int compare(PlayerRecord a, PlayerRecord b) {
+                return Integer.compare(a.getValue(timer), b.getValue(timer));
+            }
+        };
+        PriorityQueue<PlayerRecord> lowest = new PriorityQueue<PlayerRecord>(amount, order);
+        for (PlayerRecord p : this.store.getPlayers().values()) {
+            if (lowest.size() < amount) {
+                lowest.add(p);
+            } else if (p.getValue(timer) > lowest.peek().getValue(timer)) {
+                lowest.poll();
+                lowest.add(p);
+            }
+        }
+        back.addAll(lowest);
+        Collections.sort(back, Collections.reverseOrder(order));
+        return back;
+    }
+
+    public Map<UUID, String> getNames() {
+        Map<UUID, String> names = new HashMap<UUID, String>();
+        for (PlayerRecord p : this.store.getPlayers().values()) {
+            names.put(p.getUUID(), p.getName());
+        }
+        return names;
+    }
+
+    public Map<String, Integer> getPlayersInRange(String data, int minimum, int maximum) {
+        Timer timer = Timer.fromColumn(data);
+        Map<String, Integer> back = new HashMap<String, Integer>();
+        for (PlayerRecord p : this.store.getPlayers().values()) {
+            int value = p.getValue(timer);
+            if (value >= minimum && value <= maximum) {
+                back.put(p.getName(), value);
+            }
+        }
+        return back;
+    }
+
+    public boolean verifyFormat() {
+        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.kv.main.loading"));
+        try {
+            this.store.open();
+            if (this.plugin.firstRun()) {
+                this.store.resetAll(Timer.ONLINETIME);
+                if (this.plugin.getDebug() >= 1) {
+                    this.plugin.getLogger().info(this.plugin.getCipher().getString("data.kv.main.reset-column", Timer.ONLINETIME.getColumn()));
+                }
+            }
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("data.kv.main.error"), this.plugin.getDebug() >= 3 ? ex : "");
+            return false;
+        }
+        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.kv.main.loaded", this.store.getPlayers().size()));
+        return true;
+    }
+
+    /**
+     * Schedules the periodic compaction of the log, if it is not already
+     * scheduled. This waits until the store is in use rather than being done
+     * while it is opened, as the startup data stage runs before the plugin's
+     * executor exists.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    private synchronized void startCompactor() {
+        if (this.compactor != null) {
+            return;
+        }
+        int interval = this.plugin.getConfigurationLoader().getInt("managers.kv.compact-interval");
+        interval = interval > 0 ? interval : 300;
+        this.compactor = this.plugin.getExecutiveManager().runAsyncTaskRepeat(new Runnable() {
+            public void run() {
+                compact();
+            }
+        }, interval, interval);
+    }
+
+    /**
+     * Compacts the log if it has grown far enough past the live data
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    private void compact() {
+        double ratio = this.plugin.getConfigurationLoader().getDouble("managers.kv.compact-ratio");
+        if (!this.store.needsCompaction(ratio > 1 ? ratio : 4)) {
+            return;
+        }
+        try {
+            long saved = this.store.compact();
+            if (this.plugin.getDebug() >= 1) {
+                this.plugin.getLogger().info(this.plugin.getCipher().getString("data.kv.compact.complete", saved / 1024));
+            }
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("data.kv.compact.error"), this.plugin.getDebug() >= 3 ? ex : "");
+        }
+    }
+
+    public void init() {
+        this.store = new KVStore(this.plugin, new File(this.plugin.getDataFolder(), FILE), this.plugin.getConfigurationLoader().getBoolean("managers.kv.sync"));
+    }
+
+    public void startRunnables() {
+        this.startCompactor();
+        this.plugin.getExecutiveManager().runAsyncTaskRepeat(new AddRunnable(this.plugin), 60L, 60L);
+        this.plugin.getExecutiveManager().runAsyncTask(new UUIDRunnable(this.plugin), 0L);
+    }
+
+    public void startConversion(String newType, String... players) {
+        if (!this.plugin.getExecutiveManager().runAsyncTask(new StartConvertRunnable(this.plugin, newType, players), 0L)) {
+            this.plugin.getDataManager().finishConversion();
+        }
+    }
+
+    public synchronized void cleanup() {
+        if (this.compactor != null) {
+            this.compactor.cancel(false);
+            this.compactor = null;
+        }
+        try {
+            this.store.close();
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? ex : "null");
+        }
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return null;
+    }
+
+    public void reset(Map<Timer, Set<UUID>> reset) throws SQLException {
+        try {
+            this.store.reset(reset);
+        } catch (IOException ex) {
+            throw new SQLException("Could not write the resets", ex);
+        }
+    }
+
+    public void write(List<Delta> batch) throws SQLException {
+        //a conversion target is never started, so compact once it is written to
+        this.startCompactor();
+        try {
+            this.store.add(batch);
+        } catch (IOException ex) {
+            throw new SQLException("Could not write the batch", ex);
+        }
+    }
+
+    public int count() {
+        return this.store.getPlayers().size();
+    }
+
+    public List<PlayerRecord> exportPlayers(UUID after, int limit) {
+        List<PlayerRecord> back = new ArrayList<PlayerRecord>();
+        for (PlayerRecord p : (after == null ? this.store.getPlayers() : this.store.getPlayers().tailMap(after, false)).values()) {
+            if (back.size() >= limit) {
+                break;
+            }
+            back.add(p);
+        }
+        return back;
+    }
+
+    public void importPlayers(List<PlayerRecord> players) throws SQLException {
+        try {
+            this.store.put(players);
+        } catch (IOException ex) {
+            throw new SQLException("Could not write the players", ex);
+        }
+    }
+
+    public List<LegacyRecord> exportLegacy(int after, int limit) {
+        return this.store.getLegacy(after, limit);
+    }
+
+    public void importLegacy(List<LegacyRecord> rows) throws SQLException {
+        try {
+            this.store.putLegacy(rows);
+        } catch (IOException ex) {
+            throw new SQLException("Could not write the legacy rows", ex);
+        }
+    }
+
+    public int moveLegacy(Map<String, UUID> resolved, List<LegacyRecord> batch) throws SQLException {
+        try {
+            return this.store.moveLegacy(resolved, batch);
+        } catch (IOException ex) {
+            throw new SQLException("Could not move the legacy rows", ex);
+        }
+    }
+
+    public void clear() throws SQLException {
+        try {
+            this.store.clear();
+        } catch (IOException ex) {
+            throw new SQLException("Could not clear the data", ex);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data.kv;
+
+import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.data.DataHandler;
+import com.codelanx.playtime.data.DataHandlerProvider;
+
+/**
+ * Provides the local key-value data type, registered as a service
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class KVProvider implements DataHandlerProvider {
+
+    public String getName() {
+        return "kv";
+    }
+
+    public DataHandler create(Playtime plugin) {
+        return new Data_KV(plugin);
+    }
+
+}
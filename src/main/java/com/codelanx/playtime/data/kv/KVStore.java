@@ -0,0 +1,804 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data.kv;
+
+import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.data.LegacyRecord;
+import com.codelanx.playtime.data.PlayerRecord;
+import com.codelanx.playtime.data.TimeAccumulator.Delta;
+import com.codelanx.playtime.data.Timer;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of player values, with every player held in memory.
+ * Each write is appended as a single record carrying a checksum, and only
+ * applied to memory once it is on disk, so reads never see a change that
+ * could be lost. On startup the log is read into memory and replayed; a
+ * record cut short by a crash fails its checksum and is dropped along with
+ * anything after it, which is exactly the write that was never confirmed.
+ * Since every change appends a new copy of a player, the log is compacted
+ * into a fresh file holding one copy of each once it grows too far past the
+ * live data.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class KVStore {
+
+    /**
+     * Orders uuids by their raw bytes, the same way the SQL data types sort
+     * their binary keys
+     */
+    public static final Comparator<UUID> ORDER = new Comparator<UUID>() {
+        public int compare(UUID a, UUID b) {
+            int cmp = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+            return cmp != 0 ? cmp : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+        }
+    };
+    private static final int MAGIC = 0x50544B56;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int SNAPSHOT_CHUNK = 1000;
+    private static final int MIN_COMPACT = 10000;
+    private static final byte PLAYER = 1;
+    private static final byte LEGACY = 2;
+    private static final byte LEGACY_REMOVE = 3;
+    private static final byte CLEAR = 4;
+    private final Playtime plugin;
+    private final File file;
+    private final boolean sync;
+    private final ConcurrentSkipListMap<UUID, PlayerRecord> players = new ConcurrentSkipListMap<UUID, PlayerRecord>(ORDER);
+    private final NavigableMap<Integer, LegacyRecord> legacy = new TreeMap<Integer, LegacyRecord>();
+    private FileChannel channel;
+    private long logged;
+    private boolean broken;
+
+    /**
+     * Constructor for {@link KVStore}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param file The log file
+     * @param sync Whether each write waits for the disk to confirm it
+     */
+    public KVStore(Playtime plugin, File file, boolean sync) {
+        this.plugin = plugin;
+        this.file = file;
+        this.sync = sync;
+    }
+
+    /**
+     * Opens the log, creating it if needed, and replays it into memory. A
+     * snapshot left over from a compaction that never finished is removed,
+     * as the log it was replacing is still whole.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @throws IOException If the log could not be read, or is not a log
+     */
+    public synchronized void open() throws IOException {
+        this.file.getAbsoluteFile().getParentFile().mkdirs();
+        Files.deleteIfExists(this.getSnapshotFile().toPath());
+        this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (this.channel.size() == 0) {
+                this.writeHeader(this.channel);
+                this.channel.force(true);
+                return;
+            }
+            long good = this.replay();
+            long size = this.channel.size();
+            if (good < size) {
+                this.plugin.getLogger().log(Level.WARNING, this.plugin.getCipher().getString("data.kv.main.torn", size - good));
+                this.channel.truncate(good);
+                this.channel.force(true);
+            }
+            this.channel.position(good);
+        } catch (IOException ex) {
+            this.channel.close();
+            this.channel = null;
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads the log into memory and applies every whole record in it. The
+     * log is read into a plain buffer rather than mapped, as a mapping stays
+     * open until it is collected, and on some platforms an open mapping stops
+     * the file being truncated or replaced by a compaction.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The offset just past the last whole record
+     * @throws IOException If the log could not be read, or is not a log
+     */
+    private long replay() throws IOException {
+        long size = this.channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(this.file + " is too large to be read, " + size + " bytes");
+        }
+        ByteBuffer log = ByteBuffer.allocate((int) size);
+        while (log.hasRemaining()) {
+            if (this.channel.read(log, log.position()) < 0) {
+                throw new IOException(this.file + " ended early while being read");
+            }
+        }
+        log.flip();
+        if (size < HEADER_SIZE || log.getInt() != MAGIC) {
+            throw new IOException(this.file + " is not a Playtime data file");
+        }
+        int version = log.getInt();
+        if (version != VERSION) {
+            throw new IOException(this.file + " has unknown version " + version);
+        }
+        CRC32 crc = new CRC32();
+        long good = log.position();
+        while (log.remaining() >= RECORD_HEADER_SIZE) {
+            int length = log.getInt();
+            int checksum = log.getInt();
+            if (length < 0 || length > log.remaining()) {
+                break;
+            }
+            ByteBuffer payload = log.slice();
+            payload.limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            this.apply(payload);
+            log.position(log.position() + length);
+            good = log.position();
+        }
+        return good;
+    }
+
+    /**
+     * Applies the operations of one record to memory
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param payload The body of the record
+     */
+    private void apply(ByteBuffer payload) {
+        while (payload.hasRemaining()) {
+            byte op = payload.get();
+            switch (op) {
+                case PLAYER:
+                    UUID uuid = new UUID(payload.getLong(), payload.getLong());
+                    this.players.put(uuid, new PlayerRecord(uuid, readName(payload), readValues(payload)));
+                    break;
+                case LEGACY:
+                    int id = payload.getInt();
+                    this.legacy.put(id, new LegacyRecord(id, readName(payload), readValues(payload)));
+                    break;
+                case LEGACY_REMOVE:
+                    this.legacy.remove(payload.getInt());
+                    break;
+                case CLEAR:
+                    this.players.clear();
+                    this.legacy.clear();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + op + " in a record with a valid checksum");
+            }
+            this.logged++;
+        }
+    }
+
+    /**
+     * Returns a player's stored values
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @return The player, or null if they are not stored
+     */
+    public PlayerRecord get(UUID uuid) {
+        return this.players.get(uuid);
+    }
+
+    /**
+     * Returns every stored player, ordered by {@link #ORDER}. The view is
+     * live, and safe to read while the store is written to.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The stored players
+     */
+    public NavigableMap<UUID, PlayerRecord> getPlayers() {
+        return this.players;
+    }
+
+    /**
+     * Reads a chunk of the rows waiting on a uuid, in id order
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param after The id of the last row already read
+     * @param limit The most rows to return
+     * @return The rows
+     */
+    public synchronized List<LegacyRecord> getLegacy(int after, int limit) {
+        List<LegacyRecord> back = new ArrayList<LegacyRecord>();
+        for (LegacyRecord r : this.legacy.tailMap(after, false).values()) {
+            if (back.size() >= limit) {
+                break;
+            }
+            back.add(r);
+        }
+        return back;
+    }
+
+    /**
+     * Adds counted minutes onto players, creating any not stored yet
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param batch The deltas to add
+     * @throws IOException If the record could not be written
+     */
+    public synchronized void add(List<Delta> batch) throws IOException {
+        Map<UUID, PlayerRecord> changed = new LinkedHashMap<UUID, PlayerRecord>();
+        for (Delta d : batch) {
+            PlayerRecord old = changed.get(d.getUUID());
+            if (old == null) {
+                old = this.players.get(d.getUUID());
+            }
+            int[] values = new int[Timer.values().length];
+            for (Timer t : Timer.values()) {
+                values[t.ordinal()] = (old == null ? 0 : old.getValue(t)) + d.getValue(t);
+            }
+            changed.put(d.getUUID(), new PlayerRecord(d.getUUID(), d.getName(), values));
+        }
+        this.put(changed.values());
+    }
+
+    /**
+     * Sets timers of stored players back to zero. Players that are not stored
+     * are skipped.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param reset The players to reset, grouped by timer
+     * @throws IOException If the record could not be written
+     */
+    public synchronized void reset(Map<Timer, Set<UUID>> reset) throws IOException {
+        Map<UUID, PlayerRecord> changed = new LinkedHashMap<UUID, PlayerRecord>();
+        for (Map.Entry<Timer, Set<UUID>> ent : reset.entrySet()) {
+            for (UUID uuid : ent.getValue()) {
+                PlayerRecord old = changed.get(uuid);
+                if (old == null) {
+                    old = this.players.get(uuid);
+                }
+                if (old != null) {
+                    changed.put(uuid, with(old, ent.getKey(), 0));
+                }
+            }
+        }
+        this.put(changed.values());
+    }
+
+    /**
+     * Sets a timer back to zero for every stored player
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param timer The timer to reset
+     * @throws IOException If the record could not be written
+     */
+    public synchronized void resetAll(Timer timer) throws IOException {
+        List<PlayerRecord> changed = new ArrayList<PlayerRecord>();
+        for (PlayerRecord p : this.players.values()) {
+            if (p.getValue(timer) != 0) {
+                changed.add(with(p, timer, 0));
+            }
+        }
+        this.put(changed);
+    }
+
+    /**
+     * Stores players as given, replacing any stored under the same uuid
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param records The players to store
+     * @throws IOException If the record could not be written
+     */
+    public synchronized void put(Collection<PlayerRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        Record out = new Record();
+        for (PlayerRecord p : records) {
+            out.player(p);
+        }
+        this.append(out);
+        for (PlayerRecord p : records) {
+            this.players.put(p.getUUID(), p);
+        }
+    }
+
+    /**
+     * Stores rows waiting on a uuid, keeping their ids
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param rows The rows to store
+     * @throws IOException If the record could not be written
+     */
+    public synchronized void putLegacy(List<LegacyRecord> rows) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Record out = new Record();
+        for (LegacyRecord r : rows) {
+            out.legacy(r);
+        }
+        this.append(out);
+        for (LegacyRecord r : rows) {
+            this.legacy.put(r.getId(), r);
+        }
+    }
+
+    /**
+     * Moves rows waiting on a uuid over to their players in one record,
+     * adding them onto any player already stored
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param resolved The uuids that were found, keyed by name
+     * @param batch The rows to move
+     * @return The number of rows moved
+     * @throws IOException If the record could not be written
+     */
+    public synchronized int moveLegacy(Map<String, UUID> resolved, List<LegacyRecord> batch) throws IOException {
+        Map<UUID, PlayerRecord> changed = new LinkedHashMap<UUID, PlayerRecord>();
+        List<Integer> moved = new ArrayList<Integer>();
+        for (LegacyRecord r : batch) {
+            UUID uuid = resolved.get(r.getName());
+            if (uuid == null) {
+                continue;
+            }
+            PlayerRecord old = changed.get(uuid);
+            if (old == null) {
+                old = this.players.get(uuid);
+            }
+            int[] values = new int[Timer.values().length];
+            for (Timer t : Timer.values()) {
+                values[t.ordinal()] = (old == null ? 0 : old.getValue(t)) + r.getValue(t);
+            }
+            changed.put(uuid, new PlayerRecord(uuid, old == null ? r.getName() : old.getName(), values));
+            moved.add(r.getId());
+        }
+        if (moved.isEmpty()) {
+            return 0;
+        }
+        Record out = new Record();
+        for (PlayerRecord p : changed.values()) {
+            out.player(p);
+        }
+        for (int id : moved) {
+            out.removeLegacy(id);
+        }
+        this.append(out);
+        for (PlayerRecord p : changed.values()) {
+            this.players.put(p.getUUID(), p);
+        }
+        for (int id : moved) {
+            this.legacy.remove(id);
+        }
+        return moved.size();
+    }
+
+    /**
+     * Removes every player and every row waiting on a uuid
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @throws IOException If the record could not be written
+     */
+    public synchronized void clear() throws IOException {
+        Record out = new Record();
+        out.clear();
+        this.append(out);
+        this.players.clear();
+        this.legacy.clear();
+    }
+
+    /**
+     * Returns whether the log has grown far enough past the live data to be
+     * worth compacting
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param ratio How many times larger than the live data the log may grow
+     * @return true if the log should be compacted
+     */
+    public synchronized boolean needsCompaction(double ratio) {
+        long live = this.players.size() + this.legacy.size();
+        return this.channel != null && this.logged >= Math.max(MIN_COMPACT, live * ratio);
+    }
+
+    /**
+     * Writes a snapshot holding one copy of each player and legacy row, then
+     * swaps it in for the log. The snapshot is synced before the swap, and
+     * the swap is a single rename, so a crash at any point leaves either the
+     * old log or the snapshot whole.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The number of bytes the log shrank by
+     * @throws IOException If the snapshot could not be written or swapped in
+     */
+    public synchronized long compact() throws IOException {
+        this.checkOpen();
+        long before = this.channel.size();
+        File snapshot = this.getSnapshotFile();
+        FileChannel out = FileChannel.open(snapshot.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        long count = 0;
+        try {
+            this.writeHeader(out);
+            Record chunk = new Record();
+            for (PlayerRecord p : this.players.values()) {
+                chunk.player(p);
+                if (chunk.ops >= SNAPSHOT_CHUNK) {
+                    count += chunk.ops;
+                    write(out, chunk);
+                    chunk = new Record();
+                }
+            }
+            for (LegacyRecord r : this.legacy.values()) {
+                chunk.legacy(r);
+                if (chunk.ops >= SNAPSHOT_CHUNK) {
+                    count += chunk.ops;
+                    write(out, chunk);
+                    chunk = new Record();
+                }
+            }
+            if (chunk.ops > 0) {
+                count += chunk.ops;
+                write(out, chunk);
+            }
+            out.force(true);
+        } catch (IOException ex) {
+            out.close();
+            Files.deleteIfExists(snapshot.toPath());
+            throw ex;
+        }
+        out.close();
+        //the log is closed first, as an open file cannot be replaced everywhere
+        this.channel.close();
+        try {
+            Files.move(snapshot.toPath(), this.file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.channel.position(this.channel.size());
+        }
+        this.logged = count;
+        return before - this.channel.size();
+    }
+
+    /**
+     * Syncs and closes the log
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @throws IOException If the log could not be closed
+     */
+    public synchronized void close() throws IOException {
+        if (this.channel == null) {
+            return;
+        }
+        try {
+            this.channel.force(true);
+        } finally {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Appends a record to the log. If it cannot be written whole, the log is
+     * cut back to where it was, so nothing is ever appended after a partial
+     * record that replay would stop at.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param record The record to append
+     * @throws IOException If the record could not be written
+     */
+    private void append(Record record) throws IOException {
+        this.checkOpen();
+        long start = this.channel.position();
+        try {
+            write(this.channel, record);
+            if (this.sync) {
+                this.channel.force(false);
+            }
+        } catch (IOException ex) {
+            try {
+                this.channel.truncate(start);
+                this.channel.position(start);
+            } catch (IOException cut) {
+                this.broken = true;
+            }
+            throw ex;
+        }
+        this.logged += record.ops;
+    }
+
+    /**
+     * Checks that records can be appended to the log
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @throws IOException If the log is closed, or a failed write could not
+     *                     be cut back off it
+     */
+    private void checkOpen() throws IOException {
+        if (this.channel == null) {
+            throw new IOException(this.file + " is not open");
+        }
+        if (this.broken) {
+            throw new IOException(this.file + " ends in a partial write that could not be removed");
+        }
+    }
+
+    /**
+     * Writes the file header
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param out The file to write to
+     * @throws IOException If the header could not be written
+     */
+    private void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+    }
+
+    /**
+     * Returns the file a compaction writes its snapshot to
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The snapshot file
+     */
+    private File getSnapshotFile() {
+        return new File(this.file.getPath() + ".compact");
+    }
+
+    /**
+     * Writes a record, with its length and checksum, at the current position
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param out The file to write to
+     * @param record The record to write
+     * @throws IOException If the record could not be written
+     */
+    private static void write(FileChannel out, Record record) throws IOException {
+        byte[] payload = record.bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /**
+     * Returns a copy of a player with one timer changed
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param p The player
+     * @param timer The timer to change
+     * @param value The new value of the timer
+     * @return The changed copy
+     */
+    private static PlayerRecord with(PlayerRecord p, Timer timer, int value) {
+        int[] values = new int[Timer.values().length];
+        for (Timer t : Timer.values()) {
+            values[t.ordinal()] = t == timer ? value : p.getValue(t);
+        }
+        return new PlayerRecord(p.getUUID(), p.getName(), values);
+    }
+
+    /**
+     * Reads a name written by {@link Record}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param in The record being read
+     * @return The name
+     */
+    private static String readName(ByteBuffer in) {
+        byte[] name = new byte[in.getShort() & 0xFFFF];
+        in.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the timer values written by {@link Record}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param in The record being read
+     * @return The values, in {@link Timer} order
+     */
+    private static int[] readValues(ByteBuffer in) {
+        int[] values = new int[Timer.values().length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.getInt();
+        }
+        return values;
+    }
+
+    /**
+     * The body of one record, built up an operation at a time
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    private static class Record {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(this.bytes);
+        private int ops;
+
+        /**
+         * Stores a player
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param p The player to store
+         * @throws IOException Never, as the record is written to memory
+         */
+        public void player(PlayerRecord p) throws IOException {
+            this.out.writeByte(PLAYER);
+            this.out.writeLong(p.getUUID().getMostSignificantBits());
+            this.out.writeLong(p.getUUID().getLeastSignificantBits());
+            this.name(p.getName());
+            for (Timer t : Timer.values()) {
+                this.out.writeInt(p.getValue(t));
+            }
+            this.ops++;
+        }
+
+        /**
+         * Stores a row waiting on a uuid
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param r The row to store
+         * @throws IOException Never, as the record is written to memory
+         */
+        public void legacy(LegacyRecord r) throws IOException {
+            this.out.writeByte(LEGACY);
+            this.out.writeInt(r.getId());
+            this.name(r.getName());
+            for (Timer t : Timer.values()) {
+                this.out.writeInt(r.getValue(t));
+            }
+            this.ops++;
+        }
+
+        /**
+         * Removes a row waiting on a uuid
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param id The id of the row
+         * @throws IOException Never, as the record is written to memory
+         */
+        public void removeLegacy(int id) throws IOException {
+            this.out.writeByte(LEGACY_REMOVE);
+            this.out.writeInt(id);
+            this.ops++;
+        }
+
+        /**
+         * Removes everything stored before this record
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @throws IOException Never, as the record is written to memory
+         */
+        public void clear() throws IOException {
+            this.out.writeByte(CLEAR);
+            this.ops++;
+        }
+
+        /**
+         * Writes a name as its length followed by its UTF-8 bytes
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param name The name to write
+         * @throws IOException Never, as the record is written to memory
+         */
+        private void name(String name) throws IOException {
+            byte[] raw = (name == null ? "" : name).getBytes(StandardCharsets.UTF_8);
+            this.out.writeShort(raw.length);
+            this.out.write(raw);
+        }
+
+    }
+
+}
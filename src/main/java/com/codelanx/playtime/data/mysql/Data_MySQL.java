@@ -17,32 +17,47 @@
 package com.codelanx.playtime.data.mysql;
 
 import com.codelanx.playtime.Playtime;
-import com.codelanx.playtime.data.DataHandler;
+import com.codelanx.playtime.callable.UUIDFetcher;
+import com.codelanx.playtime.data.BinaryKeyMigration;
+import com.codelanx.playtime.data.ConnectionPool;
+import com.codelanx.playtime.data.CreateTableMigration;
+import com.codelanx.playtime.data.Leaderboard;
+import com.codelanx.playtime.data.Migration;
+import com.codelanx.playtime.data.Query;
+import com.codelanx.playtime.data.SQLDataHandler;
+import com.codelanx.playtime.data.SchemaMigrator;
+import com.codelanx.playtime.data.Timer;
 import com.codelanx.playtime.runnable.AddRunnable;
 import com.codelanx.playtime.runnable.StartConvertRunnable;
+import com.codelanx.playtime.runnable.UUIDRunnable;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.bukkit.Bukkit;
 
 /**
  * MySQL Data manager. See DataHandler for information about each method.
  *
  * @since 1.3.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
-public class Data_MySQL implements DataHandler {
+public class Data_MySQL extends SQLDataHandler {
 
-    private final Playtime plugin;
+    private static final String CREATE_TABLE = "CREATE TABLE `{table}` (`uuid` BINARY(16) NOT NULL, `username` VARCHAR(32) NOT NULL, `playtime` int NOT NULL DEFAULT 0, `deathtime` int NOT NULL DEFAULT 0, `onlinetime` int NOT NULL DEFAULT 0, PRIMARY KEY (`uuid`), INDEX `playtime` (`playtime`), INDEX `deathtime` (`deathtime`), INDEX `onlinetime` (`onlinetime`)) ENGINE=InnoDB";
+    private static final String CREATE_LEGACY = "CREATE TABLE IF NOT EXISTS `" + BinaryKeyMigration.LEGACY_TABLE + "` (`id` int NOT NULL, `username` VARCHAR(32) NOT NULL, `playtime` int NOT NULL DEFAULT 0, `deathtime` int NOT NULL DEFAULT 0, `onlinetime` int NOT NULL DEFAULT 0, PRIMARY KEY (`id`)) ENGINE=InnoDB";
     private MySQL db;
     
     public Data_MySQL(Playtime plugin) {
-        this.plugin = plugin;
+        super(plugin);
     }
 
     public String getName() {
@@ -50,155 +65,208 @@ public class Data_MySQL implements DataHandler {
     }
 
     public int getValue(String data, UUID user) {
-        if (Bukkit.getPlayer(user) == null
-                || (data.equals("onlinetime") && !Bukkit.getPlayer(user).isOnline())) {
-            return -1;
-        }
-        this.db = new MySQL();
+        Timer timer = Timer.fromColumn(data);
+        MySQL db = new MySQL();
         int ret = 0;
         try {
-            this.db.open();
-            ResultSet result = this.db.query("SELECT `" + data + "` FROM `playTime` WHERE `uuid`='" + user + "'");
+            db.open();
+            ResultSet result = db.query(Query.SELECT_VALUE.getSQL(timer), user);
             if (result.next()) {
                 ret = result.getInt(1);
             }
         } catch (SQLException e) {
             this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
         } finally {
-            this.db.close();
+            db.close();
         }
         return ret;
     }
 
-    public Map<String, Integer> getTopPlayers(String data, byte amount) {
-        this.db = new MySQL();
-        Map<String, Integer> players = new HashMap<String, Integer>();
+    public int[] getValues(UUID user) throws SQLException {
+        MySQL db = new MySQL();
+        int[] ret = null;
         try {
-            this.db.open();
-            ResultSet result = this.db.query("SELECT * FROM `playTime` ORDER BY `" + data + "` DESC LIMIT " + amount);
-            boolean end = false;
-            while (!end) {
-                if (result.next()) {
-                    players.put(result.getString("username"), result.getInt(data));
-                } else {
-                    end = true;
+            db.open();
+            ResultSet result = db.query(Query.SELECT_ALL.getSQL(), user);
+            if (result.next()) {
+                ret = new int[Timer.values().length];
+                for (int i = 0; i < ret.length; i++) {
+                    ret[i] = result.getInt(i + 1);
                 }
             }
+        } finally {
+            db.close();
+        }
+        return ret;
+    }
+
+    public Map<String, Integer> getTopPlayers(String data, byte amount) {
+        Timer timer = Timer.fromColumn(data);
+        MySQL db = new MySQL();
+        Map<String, Integer> players = new LinkedHashMap<String, Integer>();
+        try {
+            db.open();
+            ResultSet result = db.query(Query.SELECT_TOP.getSQL(timer), amount);
+            while (result.next()) {
+                players.put(result.getString(2), result.getInt(3));
+            }
         } catch (SQLException e) {
             this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
         } finally {
-            this.db.close();
+            db.close();
         }
         return players;
     }
 
-    public Map<String, Integer> getPlayersInRange(String timer, int minimum, int maximum) {
-        this.db = new MySQL();
+    public List<Leaderboard.Entry> getTopEntries(String data, int amount) {
+        Timer timer = Timer.fromColumn(data);
+        MySQL db = new MySQL();
+        List<Leaderboard.Entry> entries = new ArrayList<Leaderboard.Entry>();
+        try {
+            db.open();
+            ResultSet result = db.query(Query.SELECT_TOP.getSQL(timer), amount);
+            while (result.next()) {
+                entries.add(new Leaderboard.Entry(UUIDFetcher.fromBytes(result.getBytes(1)), result.getString(2), result.getInt(3)));
+            }
+        } catch (SQLException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
+            return null;
+        } finally {
+            db.close();
+        }
+        return entries;
+    }
+
+    public Map<UUID, String> getNames() {
+        MySQL db = new MySQL();
+        Map<UUID, String> names = new HashMap<UUID, String>();
+        try {
+            db.open();
+            ResultSet result = db.query(Query.SELECT_NAMES.getSQL());
+            while (result.next()) {
+                names.put(UUIDFetcher.fromBytes(result.getBytes(1)), result.getString(2));
+            }
+        } catch (SQLException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
+            return null;
+        } finally {
+            db.close();
+        }
+        return names;
+    }
+
+    public Map<String, Integer> getPlayersInRange(String data, int minimum, int maximum) {
+        Timer timer = Timer.fromColumn(data);
+        MySQL db = new MySQL();
         Map<String, Integer> back = new HashMap<String, Integer>();
         try {
-            this.db.open();
-            ResultSet ret = this.db.query("SELECT * FROM `playTime` WHERE `" + timer + "` BETWEEN " + minimum + " AND " + maximum);
+            db.open();
+            ResultSet ret = db.query(Query.SELECT_RANGE.getSQL(timer), minimum, maximum);
             while (ret.next()) {
-                back.put(ret.getString("username"), ret.getInt(timer));
+                back.put(ret.getString(1), ret.getInt(2));
             }
         } catch (SQLException e) {
             this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
         } finally {
-            this.db.close();
+            db.close();
         }
         return back;
     }
 
-    public void verifyFormat() {
+    public boolean verifyFormat() {
         this.db = new MySQL();
         this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.connecting"));
         try {
             this.db.open();
-            if (this.db.checkConnection()) {
-                this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.connect-success"));
-                if (!this.db.checkTable("playTime")) {
-                    this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.mysql.main.create-table", this.plugin.getConfig().getString("managers.mysql.database")));
-                    int result = this.db.update("CREATE TABLE `playTime` ( id int NOT NULL AUTO_INCREMENT, username VARCHAR(32) NOT NULL, uuid VARCHAR(36) NOT NULL, playtime int NOT NULL DEFAULT 0, deathtime int NOT NULL DEFAULT 0, onlinetime int NOT NULL DEFAULT 0, PRIMARY KEY (id), UNIQUE KEY (username)) ENGINE=InnoDB;");
-                } else {
-                    try {
-                        this.db.update("ALTER TABLE `playTime` ADD COLUMN `username` VARCHAR(32) NULL DEFAULT NULL AFTER `id`, ADD UNIQUE INDEX `username` (`username`)");
-                        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.missing-user"));
-                        this.db.update("DROP TABLE `playTime`");
-                        this.db.update("CREATE TABLE playTime ( id int NOT NULL AUTO_INCREMENT, username VARCHAR(32) NOT NULL, playtime int NOT NULL, deathtime int NOT NULL, PRIMARY KEY (id), UNIQUE KEY (username)) ENGINE=InnoDB;");
-                    } catch (SQLException e) {
-                    }
-                    try {
-                        this.db.update("ALTER TABLE `playTime` ADD `playtime` int NOT NULL DEFAULT 0 AFTER `username`");
-                        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.missing-playtime"));
-                        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.reset-column", "`playtime`"));
-                    } catch (SQLException e) {
-                    }
-                    /*try {
-                        this.db.update("ALTER TABLE `playTime` ADD UNIQUE INDEX `username` (`username`)");
-                        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.updating-table", "1.1"));
-                    } catch (SQLException e) {
-                    }*/
-                    try {
-                        this.db.update("ALTER TABLE `playTime` ADD deathtime int NOT NULL AFTER `playtime`");
-                        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.updating-table", "1.2.0"));
-                    } catch (SQLException e) {
-                    }
-                    try {
-                        this.db.update("ALTER TABLE `playTime` ADD onlinetime int NOT NULL DEFAULT 1 AFTER `deathtime`");
-                        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.updating-table", "1.3.0"));
-                    } catch (SQLException e) {
-                    }
-                    try {
-                        this.db.update("ALTER TABLE `playTime` ADD `uuid` NOT NULL VARCHAR(36) AFTER `username`");
-                        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.updating-table", "1.5.0"));
-                    } catch (SQLException e) {
-                    }
-                    try {
-                        this.db.update("ALTER TABLE `playTime` CHANGE COLUMN `playtime` `playtime` int NOT NULL DEFAULT 0 AFTER `username`");
-                        if (this.plugin.getDebug() >= 1) {
-                            this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.setting-defaults", "`playtime`"));
-                        }
-                    } catch (SQLException e) {
-                    }
-                    try {
-                        this.db.update("ALTER TABLE `playTime` CHANGE COLUMN `deathtime` `deathtime` int NOT NULL DEFAULT 0 AFTER `playtime`");
-                        if (this.plugin.getDebug() >= 1) {
-                            this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.setting-defaults", "`deathtime`"));
-                        }
-                    } catch (SQLException e) {
-                    }
-                    try {
-                        this.db.update("ALTER TABLE `playTime` CHANGE COLUMN `onlinetime` `onlinetime` int NOT NULL DEFAULT 0 AFTER `deathtime`");
-                        if (this.plugin.getDebug() >= 1) {
-                            this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.setting-defaults", "`onlinetime`"));
-                        }
-                    } catch (SQLException e) {
-                    }
-                    try {
-                        this.db.update("ALTER TABLE `playTime` DROP INDEX `username`");
-                    } catch (SQLException e) {}
-                    try {
-                        this.db.update("ALTER TABLE `playTime` ADD `uuid` VARCHAR(80) NOT NULL AFTER `id`");
-                    } catch (SQLException e) {}
-                    if (this.plugin.firstRun()) {
-                        try {
-                            this.db.update("UPDATE `playTime` SET `onlinetime`=0");
-                            if (this.plugin.getDebug() >= 1) {
-                                this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.reset-column", "`onlinetime`"));
-                            }
-                        } catch (SQLException e) {
-                        }
+            if (!this.db.checkConnection()) {
+                this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.error"));
+                return false;
+            }
+            this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.connect-success"));
+            try {
+                new SchemaMigrator(this.plugin, this.getMigrations()).migrate(this.db.getConnection());
+            } catch (SQLException ex) {
+                this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("data.migration.error"), this.plugin.getDebug() >= 3 ? ex : "");
+                return false;
+            }
+            if (this.plugin.firstRun()) {
+                try {
+                    this.db.update("UPDATE `playTime` SET `onlinetime`=0");
+                    if (this.plugin.getDebug() >= 1) {
+                        this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.reset-column", "`onlinetime`"));
                     }
-                    this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.uptodate"));
+                } catch (SQLException ex) {
+                    this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? ex : "null");
                 }
             }
+            this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.uptodate"));
+            return true;
         } catch (SQLException ex) {
             Logger.getLogger(Playtime.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
         } finally {
             this.db.close();
         }
     }
 
+    /**
+     * Returns every step of the MySQL table layout
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The schema steps, in version order
+     */
+    private List<Migration> getMigrations() {
+        List<Migration> back = new ArrayList<Migration>();
+        back.add(new CreateTableMigration(this.plugin, CREATE_TABLE.replace("{table}", "playTime")));
+        back.add(new BinaryKeyMigration(this.plugin, new String[] {
+            CREATE_TABLE.replace("{table}", "playTime_new"),
+            CREATE_LEGACY
+        }, new String[] {
+            "RENAME TABLE `playTime` TO `playTime_old`, `playTime_new` TO `playTime`",
+            "DROP TABLE `playTime_old`"
+        }));
+        back.add(new Migration() {
+            public int getVersion() {
+                return 3;
+            }
+
+            public String getName() {
+                return "legacy table";
+            }
+
+            public void apply(Connection con) throws SQLException {
+                Statement stmt = con.createStatement();
+                try {
+                    stmt.executeUpdate(CREATE_LEGACY);
+                } finally {
+                    stmt.close();
+                }
+            }
+        });
+        return back;
+    }
+
+    protected <T> T read(Work<T> work) throws SQLException {
+        return this.write(work);
+    }
+
+    protected <T> T write(Work<T> work) throws SQLException {
+        MySQL db = new MySQL();
+        try {
+            db.open();
+            return work.run(db.getLease());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Override
+    protected String getClearStatement(String table) {
+        return "TRUNCATE TABLE `" + table + "`";
+    }
+
     public void init() {
         this.db = new MySQL(this.plugin.getConfig().getString("managers.mysql.host"), this.plugin.getConfig().getString("managers.mysql.username"), this.plugin.getConfig().getString("managers.mysql.password"), this.plugin.getConfig().getString("managers.mysql.database"), this.plugin.getConfig().getString("managers.mysql.port"));
     }
@@ -209,6 +277,7 @@ public class Data_MySQL implements DataHandler {
             this.db.open();
             if (this.db.checkConnection()) {
                 this.plugin.getExecutiveManager().runAsyncTaskRepeat(new AddRunnable(this.plugin), 60L, 60L);
+                this.plugin.getExecutiveManager().runAsyncTask(new UUIDRunnable(this.plugin), 0L);
             } else {
                 this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.error"));
                 this.plugin.getServer().getPluginManager().disablePlugin(this.plugin);
@@ -221,11 +290,17 @@ public class Data_MySQL implements DataHandler {
     }
 
     public void startConversion(String newType, String... players) {
-        this.plugin.onDisable();
-        this.plugin.getExecutiveManager().runAsyncTask(new StartConvertRunnable(this.plugin, newType, players), 0L);
+        if (!this.plugin.getExecutiveManager().runAsyncTask(new StartConvertRunnable(this.plugin, newType, players), 0L)) {
+            this.plugin.getDataManager().finishConversion();
+        }
     }
 
     public void cleanup() {
         this.db = null;
+        MySQL.closePool();
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return MySQL.getPool();
     }
 }
\ No newline at end of file
@@ -17,24 +17,31 @@
 package com.codelanx.playtime.data.mysql;
 
 import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.data.ConnectionPool;
+import com.codelanx.playtime.data.PooledConnection;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.logging.Level;
 
 /**
- * Instantiable MySQL connector
+ * Instantiable MySQL connector. Connections are borrowed from a shared
+ * {@link ConnectionPool} rather than opened for each instance, and prepared
+ * statements are cached on each pooled connection.
  *
  * @since 1.1
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class MySQL {
 
-    protected static byte connections = 0;
+    protected static ConnectionPool pool = null;
     protected static String HOST = "";
     protected static String USER = "";
     protected static String PASS = "";
@@ -42,12 +49,15 @@ public class MySQL {
     protected static String PORT = "";
     protected Playtime plugin;
     protected Connection con = null;
+    protected PooledConnection lease = null;
+    protected final List<Statement> statements = new ArrayList<Statement>();
+    protected final List<ResultSet> results = new ArrayList<ResultSet>();
 
     /**
      * Sets the static variables to use in future MySQL connections
      *
      * @since 1.4.1
-     * @version 1.4.1
+     * @version 2.0.0
      *
      * @param host The hostname to use
      * @param user The username to use
@@ -63,6 +73,7 @@ public class MySQL {
         DATABASE = database;
         PORT = port;
         this.setMain(plugins);
+        closePool();
     }
 
     /**
@@ -96,24 +107,73 @@ public class MySQL {
     }
 
     /**
-     * Opens a connection to the MySQL database. Make sure to call MySQL.close()
-     * after you are finished working with the database for your segment of your
-     * code.
+     * Returns the shared connection pool, creating it if it has not been made
+     * yet or was closed by a previous shutdown.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @return The MySQL connection pool
+     */
+    protected static synchronized ConnectionPool getPool(Playtime plugin) {
+        if (pool == null || pool.isClosed()) {
+            pool = ConnectionPool.create(plugin, "mysql", new ConnectionPool.ConnectionFactory() {
+                public Connection create() throws SQLException {
+                    Properties connectionProps = new Properties();
+                    connectionProps.put("user", USER);
+                    connectionProps.put("password", PASS);
+                    return DriverManager.getConnection("jdbc:mysql://" + HOST + ":" + PORT + "/" + DATABASE
+                            + "?rewriteBatchedStatements=true&useServerPrepStmts=true", connectionProps);
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the shared connection pool if it is open
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The MySQL connection pool, or null if none is open
+     */
+    public static synchronized ConnectionPool getPool() {
+        return pool == null || pool.isClosed() ? null : pool;
+    }
+
+    /**
+     * Closes the shared connection pool. A new one will be opened on the next
+     * call to {@link #open()}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public static synchronized void closePool() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    /**
+     * Borrows a connection to the MySQL database from the connection pool.
+     * Make sure to call MySQL.close() after you are finished working with the
+     * database for your segment of your code.
      *
      * @since 1.1
-     * @version 1.4.0
+     * @version 2.0.0
      *
      * @return The Connection object
      * @throws SQLException
      */
     public Connection open() throws SQLException {
-        Properties connectionProps = new Properties();
-        connectionProps.put("user", USER);
-        connectionProps.put("password", PASS);
-
-        this.con = DriverManager.getConnection("jdbc:mysql://" + HOST + ":" + PORT + "/" + DATABASE, connectionProps);
+        ConnectionPool current = getPool(this.plugin);
+        this.lease = current.borrow();
+        this.con = this.lease.getConnection();
         if (this.plugin.getDebug() >= 2) {
-            this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.mysql.instance.open", ++connections));
+            this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.mysql.instance.open", current.getActive()));
         }
         return this.con;
     }
@@ -122,19 +182,18 @@ public class MySQL {
      * Checks if a table exists within the set database
      *
      * @since 1.1
-     * @version 1.5.0
+     * @version 2.0.0
      *
      * @param tablename Name of the table to check for
      * @return true if exists, false otherwise
      * @throws SQLException
      */
     public boolean checkTable(String tablename) throws SQLException {
-        ResultSet count = query("SELECT count(*) FROM information_schema.TABLES WHERE (TABLE_SCHEMA = '" + DATABASE + "') AND (TABLE_NAME = '" + tablename + "')");
+        ResultSet count = query("SELECT count(*) FROM information_schema.TABLES WHERE (TABLE_SCHEMA = ?) AND (TABLE_NAME = ?)", DATABASE, tablename);
         byte i = 0;
         if (count.next()) {
             i = count.getByte(1);
         }
-        count.close();
         return i == 1;
     }
 
@@ -149,8 +208,12 @@ public class MySQL {
      * @throws SQLException
      */
     public ResultSet query(String query) throws SQLException {
-        Statement stmt = this.con.createStatement();
-        return stmt.executeQuery(query);
+        try {
+            return this.createStatement().executeQuery(query);
+        } catch (SQLException ex) {
+            this.lease.markSuspect();
+            throw ex;
+        }
     }
 
     /**
@@ -164,24 +227,124 @@ public class MySQL {
      * @throws SQLException
      */
     public int update(String query) throws SQLException {
+        try {
+            return this.createStatement().executeUpdate(query);
+        } catch (SQLException ex) {
+            this.lease.markSuspect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Executes a parameterized query using a cached prepared statement
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param query The parameterized SQL string
+     * @param params The parameters to bind, in order
+     * @return A ResultSet from the query
+     * @throws SQLException
+     */
+    public ResultSet query(String query, Object... params) throws SQLException {
+        try {
+            ResultSet rs = this.lease.prepare(query, params).executeQuery();
+            this.results.add(rs);
+            return rs;
+        } catch (SQLException ex) {
+            this.lease.markSuspect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Executes a parameterized update using a cached prepared statement
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param query The parameterized SQL string
+     * @param params The parameters to bind, in order
+     * @return The number of affected rows
+     * @throws SQLException
+     */
+    public int update(String query, Object... params) throws SQLException {
+        try {
+            return this.lease.prepare(query, params).executeUpdate();
+        } catch (SQLException ex) {
+            this.lease.markSuspect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a cached prepared statement on the current connection, for use
+     * with batches. The statement must not be closed by the caller.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param query The parameterized SQL string
+     * @return The prepared statement
+     * @throws SQLException
+     */
+    public PreparedStatement prepare(String query) throws SQLException {
+        try {
+            return this.lease.prepare(query);
+        } catch (SQLException ex) {
+            this.lease.markSuspect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates a statement that will be closed along with this instance
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return A new Statement
+     * @throws SQLException
+     */
+    protected Statement createStatement() throws SQLException {
         Statement stmt = this.con.createStatement();
-        return stmt.executeUpdate(query);
+        this.statements.add(stmt);
+        return stmt;
     }
 
     /**
-     * Closes the MySQL connection. Must be open first.
+     * Closes any results and unprepared statements made and returns the
+     * connection to the pool. Must be open first.
      *
      * @since 1.1
-     * @version 1.4.2
+     * @version 2.0.0
      */
     public void close() {
-        try {
-            this.con.close();
-            if (this.plugin.getDebug() >= 2) {
-                this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.mysql.instance.open", --connections));
+        if (this.lease == null) {
+            return;
+        }
+        for (ResultSet rs : this.results) {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                this.lease.markSuspect();
             }
-        } catch (SQLException e) {
-            this.plugin.getLogger().log(Level.WARNING, this.plugin.getCipher().getString("data.mysql.instance.close-error"), this.plugin.getDebug() >= 3 ? e : "");
+        }
+        this.results.clear();
+        for (Statement stmt : this.statements) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                this.lease.markSuspect();
+            }
+        }
+        this.statements.clear();
+        this.lease.release();
+        this.lease = null;
+        this.con = null;
+        ConnectionPool current = getPool();
+        if (this.plugin.getDebug() >= 2 && current != null) {
+            this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.mysql.instance.open", current.getActive()));
         }
     }
 
@@ -205,4 +368,17 @@ public class MySQL {
         return this.con;
     }
 
+    /**
+     * Returns the pooled connection currently borrowed, whose prepared
+     * statements are cached across borrows
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The borrowed connection, or null if not open
+     */
+    public PooledConnection getLease() {
+        return this.lease;
+    }
+
 }
@@ -17,33 +17,51 @@
 package com.codelanx.playtime.data.sqlite;
 
 import com.codelanx.playtime.Playtime;
-import com.codelanx.playtime.data.DataHandler;
+import com.codelanx.playtime.callable.UUIDFetcher;
+import com.codelanx.playtime.data.BinaryKeyMigration;
+import com.codelanx.playtime.data.ConnectionPool;
+import com.codelanx.playtime.data.CreateTableMigration;
+import com.codelanx.playtime.data.Leaderboard;
+import com.codelanx.playtime.data.Migration;
+import com.codelanx.playtime.data.Query;
+import com.codelanx.playtime.data.SQLDataHandler;
+import com.codelanx.playtime.data.SchemaMigrator;
+import com.codelanx.playtime.data.Timer;
 import com.codelanx.playtime.runnable.AddRunnable;
 import com.codelanx.playtime.runnable.StartConvertRunnable;
-import java.io.File;
+import com.codelanx.playtime.runnable.UUIDRunnable;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.bukkit.Bukkit;
 
 /**
  * SQLite Data Manager. See DataHandler for information on each method.
  *
  * @since 1.3.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
-public class Data_SQLite implements DataHandler {
+public class Data_SQLite extends SQLDataHandler {
 
-    private final Playtime plugin;
-    private SQLite db;
+    private static final String CREATE_TABLE = "CREATE TABLE `{table}` (`uuid` BLOB NOT NULL PRIMARY KEY, `username` VARCHAR(32) NOT NULL, `playtime` INTEGER NOT NULL DEFAULT 0, `deathtime` INTEGER NOT NULL DEFAULT 0, `onlinetime` INTEGER NOT NULL DEFAULT 0) WITHOUT ROWID";
+    private static final String CREATE_LEGACY = "CREATE TABLE IF NOT EXISTS `" + BinaryKeyMigration.LEGACY_TABLE + "` (`id` INTEGER NOT NULL PRIMARY KEY, `username` VARCHAR(32) NOT NULL, `playtime` INTEGER NOT NULL DEFAULT 0, `deathtime` INTEGER NOT NULL DEFAULT 0, `onlinetime` INTEGER NOT NULL DEFAULT 0)";
+    private static final String[] CREATE_INDEXES = {
+        "CREATE INDEX IF NOT EXISTS `playTime_playtime` ON `playTime` (`playtime`)",
+        "CREATE INDEX IF NOT EXISTS `playTime_deathtime` ON `playTime` (`deathtime`)",
+        "CREATE INDEX IF NOT EXISTS `playTime_onlinetime` ON `playTime` (`onlinetime`)"
+    };
 
     public Data_SQLite(Playtime plugin) {
-        this.plugin = plugin;
+        super(plugin);
     }
 
     public String getName() {
@@ -51,113 +69,225 @@ public class Data_SQLite implements DataHandler {
     }
 
     public int getValue(String data, UUID user) {
-        if (Bukkit.getPlayer(user) == null
-                || (data.equals("onlinetime") && !Bukkit.getPlayer(user).isOnline())) {
-            return -1;
-        }
-        this.db = new SQLite();
+        Timer timer = Timer.fromColumn(data);
+        SQLite db = new SQLite();
         int ret = 0;
         try {
-            this.db.open();
-            ResultSet result = this.db.query("SELECT `" + data + "` FROM `playTime` WHERE `uuid`='" + user + "'");
+            db.open();
+            ResultSet result = db.query(Query.SELECT_VALUE.getSQL(timer), user);
             if (result.next()) {
                 ret = result.getInt(1);
             }
         } catch (SQLException e) {
             this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
         } finally {
-            this.db.close();
+            db.close();
         }
         return ret;
     }
 
-    public Map<String, Integer> getTopPlayers(String data, byte amount) {
-        this.db = new SQLite();
-        Map<String, Integer> players = new HashMap<String, Integer>();
+    public int[] getValues(UUID user) throws SQLException {
+        SQLite db = new SQLite();
+        int[] ret = null;
         try {
-            this.db.open();
-            ResultSet result = this.db.query("SELECT * FROM `playTime` ORDER BY `" + data + "` DESC LIMIT " + amount);
-            boolean end = false;
-            while (!end) {
-                if (result.next()) {
-                    players.put(result.getString("username"), result.getInt(data));
-                } else {
-                    end = true;
+            db.open();
+            ResultSet result = db.query(Query.SELECT_ALL.getSQL(), user);
+            if (result.next()) {
+                ret = new int[Timer.values().length];
+                for (int i = 0; i < ret.length; i++) {
+                    ret[i] = result.getInt(i + 1);
                 }
             }
+        } finally {
+            db.close();
+        }
+        return ret;
+    }
+
+    public Map<String, Integer> getTopPlayers(String data, byte amount) {
+        Timer timer = Timer.fromColumn(data);
+        SQLite db = new SQLite();
+        Map<String, Integer> players = new LinkedHashMap<String, Integer>();
+        try {
+            db.open();
+            ResultSet result = db.query(Query.SELECT_TOP.getSQL(timer), amount);
+            while (result.next()) {
+                players.put(result.getString(2), result.getInt(3));
+            }
         } catch (SQLException e) {
             this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
         } finally {
-            this.db.close();
+            db.close();
         }
         return players;
     }
 
-    public Map<String, Integer> getPlayersInRange(String timer, int minimum, int maximum) {
-        this.db = new SQLite();
+    public List<Leaderboard.Entry> getTopEntries(String data, int amount) {
+        Timer timer = Timer.fromColumn(data);
+        SQLite db = new SQLite();
+        List<Leaderboard.Entry> entries = new ArrayList<Leaderboard.Entry>();
+        try {
+            db.open();
+            ResultSet result = db.query(Query.SELECT_TOP.getSQL(timer), amount);
+            while (result.next()) {
+                entries.add(new Leaderboard.Entry(UUIDFetcher.fromBytes(result.getBytes(1)), result.getString(2), result.getInt(3)));
+            }
+        } catch (SQLException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
+            return null;
+        } finally {
+            db.close();
+        }
+        return entries;
+    }
+
+    public Map<UUID, String> getNames() {
+        SQLite db = new SQLite();
+        Map<UUID, String> names = new HashMap<UUID, String>();
+        try {
+            db.open();
+            ResultSet result = db.query(Query.SELECT_NAMES.getSQL());
+            while (result.next()) {
+                names.put(UUIDFetcher.fromBytes(result.getBytes(1)), result.getString(2));
+            }
+        } catch (SQLException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
+            return null;
+        } finally {
+            db.close();
+        }
+        return names;
+    }
+
+    public Map<String, Integer> getPlayersInRange(String data, int minimum, int maximum) {
+        Timer timer = Timer.fromColumn(data);
+        SQLite db = new SQLite();
         Map<String, Integer> back = new HashMap<String, Integer>();
         try {
-            this.db.open();
-            ResultSet ret = this.db.query("SELECT `username` FROM `playTime` WHERE `" + timer + "` BETWEEN " + minimum + " AND " + maximum);
+            db.open();
+            ResultSet ret = db.query(Query.SELECT_RANGE.getSQL(timer), minimum, maximum);
             while (ret.next()) {
-                back.put(ret.getString("username"), ret.getInt(timer));
+                back.put(ret.getString(1), ret.getInt(2));
             }
         } catch (SQLException e) {
             this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
         } finally {
-            this.db.close();
+            db.close();
         }
         return back;
     }
 
-    public void verifyFormat() {
-        this.db = new SQLite();
+    public boolean verifyFormat() {
         this.plugin.getLogger().info(this.plugin.getCipher().getString("data.sqlite.main.connecting"));
         try {
-            this.db.open();
-            this.plugin.getLogger().info(this.plugin.getCipher().getString("data.sqlite.main.connect-success"));
-            if (!this.db.checkTable("playTime")) {
-                this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.sqlite.main.create-table"));
-                this.db.update("CREATE TABLE playTime ( id INTEGER NOT NULL PRIMARY KEY, username VARCHAR(32) NOT NULL, uuid VARCHAR(36) NOT NULL UNIQUE, playtime INTEGER NOT NULL DEFAULT 0, deathtime INTEGER NOT NULL DEFAULT 0, onlinetime INTEGER NOT NULL DEFAULT 0)");
-            } else {
-                try {
-                    this.db.update("ALTER TABLE `playTime` ADD COLUMN `uuid` NOT NULL VARCHAR(36) AFTER `username`");
-                    this.plugin.getLogger().info(this.plugin.getCipher().getString("data.mysql.main.updating-table", "1.5.0"));
-                } catch (SQLException e) {
-                }
-                if (this.plugin.firstRun()) {
+            return SQLite.getWriter(this.plugin).execute(new SQLiteWriter.Task<Boolean>() {
+                public Boolean run(SQLite db) throws SQLException {
+                    plugin.getLogger().info(plugin.getCipher().getString("data.sqlite.main.connect-success"));
                     try {
-                        this.db.update("UPDATE `playTime` SET `onlinetime`=0");
-                        if (this.plugin.getDebug() >= 1) {
-                            this.plugin.getLogger().info(this.plugin.getCipher().getString("data.sqlite.main.reset-column", "`onlinetime`"));
+                        new SchemaMigrator(plugin, getMigrations()).migrate(db.getConnection());
+                    } catch (SQLException ex) {
+                        plugin.getLogger().log(Level.SEVERE, plugin.getCipher().getString("data.migration.error"), plugin.getDebug() >= 3 ? ex : "");
+                        return false;
+                    }
+                    if (plugin.firstRun()) {
+                        try {
+                            db.update("UPDATE `playTime` SET `onlinetime`=0");
+                            if (plugin.getDebug() >= 1) {
+                                plugin.getLogger().info(plugin.getCipher().getString("data.sqlite.main.reset-column", "`onlinetime`"));
+                            }
+                        } catch (SQLException ex) {
+                            plugin.getLogger().log(Level.SEVERE, "{0}", plugin.getDebug() >= 3 ? ex : "null");
                         }
-                    } catch (SQLException e) {
                     }
+                    return true;
                 }
-            }
+            });
         } catch (SQLException ex) {
             Logger.getLogger(Playtime.class.getName()).log(Level.SEVERE, this.plugin.getCipher().getString("data.sqlite.main.error"), ex);
-            File file = new File(this.plugin.getDataFolder() + File.separator + "users.db");
-            file.delete();
-            Bukkit.getServer().getPluginManager().disablePlugin(this.plugin);
+            return false;
+        }
+    }
+
+    /**
+     * Returns every step of the SQLite table layout
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The schema steps, in version order
+     */
+    private List<Migration> getMigrations() {
+        List<Migration> back = new ArrayList<Migration>();
+        back.add(new CreateTableMigration(this.plugin, CREATE_TABLE.replace("{table}", "playTime")));
+        back.add(new BinaryKeyMigration(this.plugin, new String[] {
+            CREATE_TABLE.replace("{table}", "playTime_new"),
+            CREATE_LEGACY
+        }, new String[] {
+            "ALTER TABLE `playTime` RENAME TO `playTime_old`",
+            "ALTER TABLE `playTime_new` RENAME TO `playTime`",
+            "DROP TABLE `playTime_old`"
+        }));
+        back.add(new Migration() {
+            public int getVersion() {
+                return 3;
+            }
+
+            public String getName() {
+                return "legacy table and timer indexes";
+            }
+
+            public void apply(Connection con) throws SQLException {
+                Statement stmt = con.createStatement();
+                try {
+                    stmt.executeUpdate(CREATE_LEGACY);
+                    for (String index : CREATE_INDEXES) {
+                        stmt.executeUpdate(index);
+                    }
+                } finally {
+                    stmt.close();
+                }
+            }
+        });
+        return back;
+    }
+
+    protected <T> T read(Work<T> work) throws SQLException {
+        SQLite db = new SQLite();
+        try {
+            db.open();
+            return work.run(db.getLease());
         } finally {
-            this.db.close();
+            db.close();
         }
     }
 
+    protected <T> T write(final Work<T> work) throws SQLException {
+        return SQLite.getWriter(this.plugin).execute(new SQLiteWriter.Task<T>() {
+            public T run(SQLite db) throws SQLException {
+                return work.run(db.getLease());
+            }
+        });
+    }
+
     public void init() {
     }
 
     public void startRunnables() {
         this.plugin.getExecutiveManager().runAsyncTaskRepeat(new AddRunnable(this.plugin), 60L, 60L);
+        this.plugin.getExecutiveManager().runAsyncTask(new UUIDRunnable(this.plugin), 0L);
     }
 
     public void startConversion(String newType, String... players) {
-        this.plugin.onDisable();
-        this.plugin.getExecutiveManager().runAsyncTask(new StartConvertRunnable(this.plugin, newType, players), 0L);
+        if (!this.plugin.getExecutiveManager().runAsyncTask(new StartConvertRunnable(this.plugin, newType, players), 0L)) {
+            this.plugin.getDataManager().finishConversion();
+        }
     }
 
     public void cleanup() {
-        this.db = null;
+        SQLite.closePool();
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return SQLite.getPool();
     }
 }
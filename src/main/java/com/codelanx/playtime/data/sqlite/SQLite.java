@@ -17,58 +17,201 @@
 package com.codelanx.playtime.data.sqlite;
 
 import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.data.ConnectionPool;
+import com.codelanx.playtime.data.PooledConnection;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bukkit.Bukkit;
 
 /**
- * Instantiable SQLite connector
+ * Instantiable SQLite connector. The database is kept in WAL mode, so reads
+ * never wait on a write: reads borrow from a shared pool of read-only
+ * connections, while every write is queued on the single connection owned by
+ * the {@link SQLiteWriter}. Prepared statements are cached on each pooled
+ * connection.
  *
  * @since 1.3.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class SQLite {
 
-    protected static byte connections = 0;
+    private static final String[] PRAGMAS = {
+        "PRAGMA journal_mode=WAL",
+        "PRAGMA synchronous=NORMAL",
+        "PRAGMA temp_store=MEMORY",
+        "PRAGMA cache_size=-8192"
+    };
+    protected static ConnectionPool pool = null;
+    protected static SQLiteWriter writer = null;
+    protected final ConnectionPool source;
     protected Connection con = null;
+    protected PooledConnection lease = null;
+    protected final List<Statement> statements = new ArrayList<Statement>();
+    protected final List<ResultSet> results = new ArrayList<ResultSet>();
     protected Playtime plugin;
     
     public SQLite(Playtime plugin) {
-        this.plugin = plugin;
+        this(plugin, null);
     }
     
     public SQLite() {
-        this.plugin = Playtime.getPlugin();
+        this(Playtime.getPlugin(), null);
+    }
+
+    /**
+     * Constructor for an instance borrowing from a specific pool, used by the
+     * {@link SQLiteWriter} for the write connection
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param source The pool to borrow from, or null for the read pool
+     */
+    SQLite(Playtime plugin, ConnectionPool source) {
+        this.plugin = plugin;
+        this.source = source;
+    }
+
+    /**
+     * Creates a factory for connections to the database file. Every
+     * connection waits out a locked database rather than failing straight
+     * away, and read connections refuse to write.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param readOnly Whether connections should refuse writes
+     * @return The connection factory
+     */
+    private static ConnectionPool.ConnectionFactory factory(final Playtime plugin, final boolean readOnly) {
+        return new ConnectionPool.ConnectionFactory() {
+            public Connection create() throws SQLException {
+                try {
+                    Class.forName("org.sqlite.JDBC");
+                } catch (ClassNotFoundException ex) {
+                    Logger.getLogger(SQLite.class.getName()).log(Level.SEVERE, plugin.getCipher().getString("data.sqlite.instance.error"), ex);
+                    Bukkit.getServer().getPluginManager().disablePlugin(plugin);
+                }
+                Connection back = DriverManager.getConnection("jdbc:sqlite:" + plugin.getDataFolder() + File.separator + "users.db");
+                int busy = plugin.getConfigurationLoader().getInt("managers.sqlite.busy-timeout");
+                Statement stmt = back.createStatement();
+                try {
+                    stmt.execute("PRAGMA busy_timeout=" + TimeUnit.SECONDS.toMillis(busy > 0 ? busy : 5));
+                    for (String pragma : PRAGMAS) {
+                        stmt.execute(pragma);
+                    }
+                    if (readOnly) {
+                        stmt.execute("PRAGMA query_only=ON");
+                    }
+                } catch (SQLException ex) {
+                    back.close();
+                    throw ex;
+                } finally {
+                    stmt.close();
+                }
+                return back;
+            }
+        };
+    }
+
+    /**
+     * Returns the shared read pool, creating it if it has not been made yet
+     * or was closed by a previous shutdown.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @return The SQLite read pool
+     */
+    protected static synchronized ConnectionPool getPool(Playtime plugin) {
+        if (pool == null || pool.isClosed()) {
+            int readers = plugin.getConfigurationLoader().getInt("managers.sqlite.readers");
+            pool = ConnectionPool.create(plugin, "sqlite", factory(plugin, true), readers > 0 ? readers : 4);
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the shared read pool if it is open
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The SQLite read pool, or null if none is open
+     */
+    public static synchronized ConnectionPool getPool() {
+        return pool == null || pool.isClosed() ? null : pool;
+    }
+
+    /**
+     * Returns the writer that every change to the database must go through,
+     * creating it if it has not been made yet or was closed by a previous
+     * shutdown.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @return The SQLite writer
+     */
+    public static synchronized SQLiteWriter getWriter(Playtime plugin) {
+        if (writer == null || writer.isClosed()) {
+            writer = new SQLiteWriter(plugin, ConnectionPool.create(plugin, "sqlite-writer", factory(plugin, false), 1));
+        }
+        return writer;
+    }
+
+    /**
+     * Finishes any queued writes and closes the writer and the read pool. New
+     * ones will be opened on the next call to {@link #open()} or
+     * {@link #getWriter(Playtime)}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public static synchronized void closePool() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
     }
 
     /**
-     * Opens a connection to the SQLite database. Make sure to call
-     * SQLite.close() after you are finished working with the database for your
-     * segment of your code.
+     * Borrows a connection to the SQLite database from the connection pool.
+     * Unless this instance was handed to a {@link SQLiteWriter.Task}, the
+     * connection is read-only. Make sure to call SQLite.close() after you are
+     * finished working with the database for your segment of your code.
      *
      * @since 1.3.0
-     * @version 1.4.0
+     * @version 2.0.0
      *
      * @return The Connection object
      * @throws SQLException
      */
     public Connection open() throws SQLException {
-        try {
-            Class.forName("org.sqlite.JDBC");
-        } catch (ClassNotFoundException ex) {
-            Logger.getLogger(SQLite.class.getName()).log(Level.SEVERE, this.plugin.getCipher().getString("data.sqlite.instance.error"), ex);
-            Bukkit.getServer().getPluginManager().disablePlugin(this.plugin);
-        }
-        this.con = DriverManager.getConnection("jdbc:sqlite:" + this.plugin.getDataFolder() + File.separator + "users.db");
+        ConnectionPool current = this.source == null ? getPool(this.plugin) : this.source;
+        this.lease = current.borrow();
+        this.con = this.lease.getConnection();
         if (this.plugin.getDebug() >= 2) {
-            this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.sqlite.instance.open", ++connections));
+            this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.sqlite.instance.open", current.getActive()));
         }
         return this.con;
     }
@@ -77,19 +220,18 @@ public class SQLite {
      * Checks if a table exists within the set database
      *
      * @since 1.3.0
-     * @version 1.4.0
+     * @version 2.0.0
      *
      * @param tablename Name of the table to check for
      * @return true if exists, false otherwise
      * @throws SQLException
      */
     public boolean checkTable(String tablename) throws SQLException {
-        ResultSet count = query("SELECT COUNT(*) FROM sqlite_master WHERE type='table' AND name='" + tablename + "'");
+        ResultSet count = query("SELECT COUNT(*) FROM sqlite_master WHERE type='table' AND name=?", tablename);
         byte i = 0;
         if (count.next()) {
             i = count.getByte(1);
         }
-        count.close();
         return (i == 1) ? true : false;
     }
 
@@ -105,40 +247,144 @@ public class SQLite {
      * @throws SQLException
      */
     public ResultSet query(String query) throws SQLException {
-        Statement stmt = this.con.createStatement();
-        return stmt.executeQuery(query);
+        try {
+            return this.createStatement().executeQuery(query);
+        } catch (SQLException ex) {
+            this.lease.markSuspect();
+            throw ex;
+        }
     }
 
     /**
-     * Executes a query that can change values, and will lock the database for
-     * the duration of the query
+     * Executes a query that can change values. Only usable on the write
+     * connection, which serialises writes by running them one at a time.
      *
      * @since 1.3.0
-     * @version 1.3.0
+     * @version 2.0.0
      *
      * @param query The string query to execute
      * @return 0 for no returned results, or the number of returned rows
      * @throws SQLException
      */
-    public synchronized int update(String query) throws SQLException {
+    public int update(String query) throws SQLException {
+        try {
+            return this.createStatement().executeUpdate(query);
+        } catch (SQLException ex) {
+            this.lease.markSuspect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Executes a parameterized query using a cached prepared statement
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param query The parameterized SQL string
+     * @param params The parameters to bind, in order
+     * @return A ResultSet from the query
+     * @throws SQLException
+     */
+    public ResultSet query(String query, Object... params) throws SQLException {
+        try {
+            ResultSet rs = this.lease.prepare(query, params).executeQuery();
+            this.results.add(rs);
+            return rs;
+        } catch (SQLException ex) {
+            this.lease.markSuspect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Executes a parameterized update using a cached prepared statement
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param query The parameterized SQL string
+     * @param params The parameters to bind, in order
+     * @return The number of affected rows
+     * @throws SQLException
+     */
+    public int update(String query, Object... params) throws SQLException {
+        try {
+            return this.lease.prepare(query, params).executeUpdate();
+        } catch (SQLException ex) {
+            this.lease.markSuspect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a cached prepared statement on the current connection, for use
+     * with batches. The statement must not be closed by the caller.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param query The parameterized SQL string
+     * @return The prepared statement
+     * @throws SQLException
+     */
+    public PreparedStatement prepare(String query) throws SQLException {
+        try {
+            return this.lease.prepare(query);
+        } catch (SQLException ex) {
+            this.lease.markSuspect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates a statement that will be closed along with this instance
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return A new Statement
+     * @throws SQLException
+     */
+    protected Statement createStatement() throws SQLException {
         Statement stmt = this.con.createStatement();
-        return stmt.executeUpdate(query);
+        this.statements.add(stmt);
+        return stmt;
     }
 
     /**
-     * Closes the SQLite connection. Must be open first.
+     * Closes any results and unprepared statements made and returns the
+     * connection to the pool. Must be open first.
      *
      * @since 1.3.0
-     * @version 1.4.2
+     * @version 2.0.0
      */
     public void close() {
-        try {
-            this.con.close();
-            if (this.plugin.getDebug() >= 2) {
-                this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.sqlite.instance.open", --connections));
+        if (this.lease == null) {
+            return;
+        }
+        for (ResultSet rs : this.results) {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                this.lease.markSuspect();
             }
-        } catch (SQLException e) {
-            this.plugin.getLogger().log(Level.WARNING, this.plugin.getCipher().getString("data.sqlite.instance.close-error"), this.plugin.getDebug() >= 3 ? e : "");
+        }
+        this.results.clear();
+        for (Statement stmt : this.statements) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                this.lease.markSuspect();
+            }
+        }
+        this.statements.clear();
+        this.lease.release();
+        this.lease = null;
+        this.con = null;
+        ConnectionPool current = this.source == null ? getPool() : this.source;
+        if (this.plugin.getDebug() >= 2 && current != null) {
+            this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.sqlite.instance.open", current.getActive()));
         }
     }
 
@@ -146,4 +392,17 @@ public class SQLite {
         return this.con;
     }
 
+    /**
+     * Returns the pooled connection currently borrowed, whose prepared
+     * statements are cached across borrows
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The borrowed connection, or null if not open
+     */
+    public PooledConnection getLease() {
+        return this.lease;
+    }
+
 }
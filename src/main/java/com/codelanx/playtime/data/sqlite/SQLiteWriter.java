@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.data.sqlite;
+
+import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.data.ConnectionPool;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * The only thread allowed to write to the SQLite database. Writes are queued
+ * and run one at a time on a single connection, so they never contend with
+ * each other for the database lock, while reads are served from their own
+ * read-only connections and carry on alongside them in WAL mode.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class SQLiteWriter {
+
+    private final Playtime plugin;
+    private final ConnectionPool pool;
+    private final ThreadPoolExecutor thread;
+    private volatile Thread owner;
+
+    /**
+     * Constructor for {@link SQLiteWriter}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param pool The pool holding the single write connection
+     */
+    SQLiteWriter(Playtime plugin, ConnectionPool pool) {
+        this.plugin = plugin;
+        this.pool = pool;
+        this.thread = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Playtime-SQLite-Writer");
+                t.setDaemon(true);
+                owner = t;
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Queues a write. The task is handed an open {@link SQLite} instance on
+     * the write connection, which is closed once the task returns.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param <T> The type returned by the task
+     * @param task The write to run
+     * @return A future completed with the task's result
+     * @throws RejectedExecutionException If the writer has been closed
+     */
+    public <T> Future<T> submit(final Task<T> task) {
+        Future<T> back = this.thread.submit(new Callable<T>() {
+            public T call() throws Exception {
+                SQLite db = new SQLite(plugin, pool);
+                try {
+                    db.open();
+                    return task.run(db);
+                } finally {
+                    db.close();
+                }
+            }
+        });
+        if (this.plugin.getDebug() >= 2) {
+            this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.sqlite.writer.queued", this.getQueued()));
+        }
+        return back;
+    }
+
+    /**
+     * Queues a write and waits for it to finish. If the caller is interrupted
+     * once the write has started, it still waits for the outcome so that a
+     * write is never reported as failed after it went through. Must not be
+     * called from within another task, as that task would be waiting on
+     * itself.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param <T> The type returned by the task
+     * @param task The write to run
+     * @return The task's result
+     * @throws SQLException If the task failed, never ran, or the writer is
+     *                      closed
+     */
+    public <T> T execute(Task<T> task) throws SQLException {
+        if (Thread.currentThread() == this.owner) {
+            throw new SQLException("A SQLite write cannot wait on another write");
+        }
+        Future<T> future;
+        try {
+            future = this.submit(task);
+        } catch (RejectedExecutionException ex) {
+            throw new SQLException("The SQLite writer is closed", ex);
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                    if (future.cancel(false)) {
+                        throw new SQLException("Interrupted while waiting on the SQLite writer", ex);
+                    }
+                }
+            }
+        } catch (CancellationException ex) {
+            throw new SQLException("The SQLite writer closed before the write ran", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new SQLException(ex.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of writes waiting to run
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The queued write count
+     */
+    public int getQueued() {
+        return this.thread.getQueue().size();
+    }
+
+    /**
+     * Returns whether this writer has been closed
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if no more writes are accepted
+     */
+    public boolean isClosed() {
+        return this.thread.isShutdown();
+    }
+
+    /**
+     * Stops accepting writes, waits for the queued ones to finish and closes
+     * the write connection. Writes still queued after the drain timeout are
+     * dropped, and anyone waiting on them is told they failed.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void close() {
+        this.thread.shutdown();
+        int wait = this.plugin.getConfigurationLoader().getInt("executors.drain-timeout");
+        try {
+            if (!this.thread.awaitTermination(wait > 0 ? wait : 5, TimeUnit.SECONDS)) {
+                List<Runnable> dropped = this.thread.shutdownNow();
+                for (Runnable r : dropped) {
+                    //wakes anyone waiting on the dropped write
+                    ((Future<?>) r).cancel(false);
+                }
+                this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("data.sqlite.writer.drain-timeout", dropped.size()));
+            }
+        } catch (InterruptedException ex) {
+            for (Runnable r : this.thread.shutdownNow()) {
+                ((Future<?>) r).cancel(false);
+            }
+            Thread.currentThread().interrupt();
+        }
+        this.pool.close();
+    }
+
+    /**
+     * A unit of work run on the write connection
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     *
+     * @param <T> The type of result the task returns
+     */
+    public static interface Task<T> {
+
+        /**
+         * Runs the write
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param db An open instance on the write connection
+         * @return The result of the write
+         * @throws SQLException If the write failed
+         */
+        public T run(SQLite db) throws SQLException;
+
+    }
+
+}
@@ -17,11 +17,21 @@
 package com.codelanx.playtime.data.yaml;
 
 import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.data.ConnectionPool;
 import com.codelanx.playtime.data.DataHandler;
+import com.codelanx.playtime.data.Leaderboard;
+import com.codelanx.playtime.data.LegacyRecord;
+import com.codelanx.playtime.data.PlayerRecord;
+import com.codelanx.playtime.data.TimeAccumulator.Delta;
+import com.codelanx.playtime.data.Timer;
 import com.codelanx.playtime.runnable.AddRunnable;
 import com.codelanx.playtime.runnable.StartConvertRunnable;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
@@ -31,7 +41,7 @@ import org.bukkit.configuration.ConfigurationSection;
  *
  * @since 1.3.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class Data_YAML implements DataHandler {
 
@@ -55,15 +65,27 @@ public class Data_YAML implements DataHandler {
         return this.yaml.getFile().getInt("users." + this.plugin.getBestPlayer(uuid) + "." + data);*/
     }
 
+    public int[] getValues(UUID user) {
+        return null;
+    }
+
     public Map<String, Integer> getTopPlayers(String data, byte amount) {
         return new HashMap<String, Integer>();
     }
 
+    public List<Leaderboard.Entry> getTopEntries(String data, int amount) {
+        return null;
+    }
+
+    public Map<UUID, String> getNames() {
+        return null;
+    }
+
     public Map<String, Integer> getPlayersInRange(String timer, int minimum, int maximum) {
         return new HashMap<String, Integer>();
     }
 
-    public void verifyFormat() {
+    public boolean verifyFormat() {
         if (this.plugin.firstRun()) {
             ConfigurationSection section = this.yaml.getFile().getConfigurationSection("users");
             for (String s : section.getKeys(false)) {
@@ -71,6 +93,7 @@ public class Data_YAML implements DataHandler {
             }
             this.yaml.forceSave();
         }
+        return true;
     }
 
     public void init() {
@@ -82,12 +105,53 @@ public class Data_YAML implements DataHandler {
     }
 
     public void startConversion(String newType, String... players) {
-        this.plugin.onDisable();
-        this.plugin.getExecutiveManager().runAsyncTask(new StartConvertRunnable(this.plugin, newType, players), 0L);
+        if (!this.plugin.getExecutiveManager().runAsyncTask(new StartConvertRunnable(this.plugin, newType, players), 0L)) {
+            this.plugin.getDataManager().finishConversion();
+        }
     }
 
     public void cleanup() {
         this.yaml.forceSave();
         this.yaml = null;
     }
+
+    public ConnectionPool getConnectionPool() {
+        return null;
+    }
+
+    public void reset(Map<Timer, Set<UUID>> reset) throws SQLException {
+        throw new SQLException("Flatfile storage cannot be written to");
+    }
+
+    public void write(List<Delta> batch) throws SQLException {
+        throw new SQLException("Flatfile storage cannot be written to");
+    }
+
+    public int count() {
+        return 0;
+    }
+
+    public List<PlayerRecord> exportPlayers(UUID after, int limit) {
+        return new ArrayList<PlayerRecord>();
+    }
+
+    public void importPlayers(List<PlayerRecord> players) throws SQLException {
+        throw new SQLException("Flatfile storage cannot be written to");
+    }
+
+    public List<LegacyRecord> exportLegacy(int after, int limit) {
+        return new ArrayList<LegacyRecord>();
+    }
+
+    public void importLegacy(List<LegacyRecord> rows) throws SQLException {
+        throw new SQLException("Flatfile storage cannot be written to");
+    }
+
+    public int moveLegacy(Map<String, UUID> resolved, List<LegacyRecord> batch) {
+        return 0;
+    }
+
+    public void clear() throws SQLException {
+        throw new SQLException("Flatfile storage cannot be written to");
+    }
 }
@@ -17,11 +17,8 @@
 package com.codelanx.playtime.data.yaml;
 
 import com.codelanx.playtime.Playtime;
-import com.codelanx.playtime.event.Event;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -61,33 +58,20 @@ public class YAML {
     }
 
     /**
-     * Increases an int value within the data file by 1, and fires events if
-     * triggered
+     * Increases an int value within the data file by 1. Events are fired by
+     * the {@link com.codelanx.playtime.data.DataManager} as minutes are counted.
      *
      * For the users yml file, the key should be in the format:
      * "users.[username].[value]"
      *
      * @since 1.3.0
-     * @version 1.5.0
+     * @version 2.0.0
      *
      * @param key The path to the data to edit
      */
     public void incrementValue(String key) {
         int i = yaml.getInt(key);
         i++;
-        if (plugin.getEventHandler() != null) {
-            boolean eventFired = false;
-            List<String> fire = new ArrayList<String>();
-            for (Event e : plugin.getEventHandler().getEvents().values()) {
-                if (!e.isLoginEvent() && i == e.getTrigger()) {
-                    eventFired = true;
-                    fire.add(e.getName());
-                }
-            }
-            if (eventFired) {
-                plugin.getEventHandler().fireEvents(fire, key.split(".")[1]);
-            }
-        }
         yaml.set(key, i);
     }
 
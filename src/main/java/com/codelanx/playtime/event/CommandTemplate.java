@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An event command, parsed once when events are loaded. The command is
+ * classified as either a message to the player or a console command, and
+ * split into literal text and placeholder slots so rendering it for a player
+ * is a single append pass.
+ *
+ * Placeholders: {@code %u} is the player's name, {@code %t} is the readable
+ * value of the event's timer.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class CommandTemplate {
+
+    private static final Set<String> MESSAGE_LABELS = new HashSet<String>(Arrays.asList(
+            "msg", "message", "whisper", "whipser", "w", "m", "t", "tell"));
+    private static final byte USER = 0;
+    private static final byte TIME = 1;
+    private final boolean message;
+    private final String[] literals;
+    private final byte[] slots;
+    private final int length;
+    private final boolean usesTime;
+
+    /**
+     * Constructor for {@link CommandTemplate}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param raw The command as written in the events file
+     */
+    public CommandTemplate(String raw) {
+        String body = raw;
+        String[] words = raw.split(" ");
+        this.message = MESSAGE_LABELS.contains(words[0].toLowerCase());
+        if (this.message && words.length >= 3) {
+            //strip the label and target, leaving the message itself
+            StringBuilder sb = new StringBuilder();
+            for (int i = 2; i < words.length; i++) {
+                sb.append(words[i]).append(" ");
+            }
+            body = sb.toString().trim();
+        }
+        List<String> parts = new ArrayList<String>();
+        List<Byte> found = new ArrayList<Byte>();
+        int last = 0;
+        for (int i = 0; i < body.length() - 1; i++) {
+            if (body.charAt(i) != '%') {
+                continue;
+            }
+            char c = body.charAt(i + 1);
+            if (c == 'u' || c == 't') {
+                parts.add(body.substring(last, i));
+                found.add(c == 'u' ? USER : TIME);
+                last = i + 2;
+                i++;
+            }
+        }
+        parts.add(body.substring(last));
+        this.literals = parts.toArray(new String[parts.size()]);
+        this.slots = new byte[found.size()];
+        boolean time = false;
+        for (int i = 0; i < this.slots.length; i++) {
+            this.slots[i] = found.get(i);
+            time |= this.slots[i] == TIME;
+        }
+        this.usesTime = time;
+        this.length = body.length();
+    }
+
+    /**
+     * Fills in the placeholders for a player
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param user The player's name
+     * @param time The readable timer value, may be null if
+     *             {@link #usesTime()} is false
+     * @return The command or message to send
+     */
+    public String render(String user, String time) {
+        if (this.slots.length == 0) {
+            return this.literals[0];
+        }
+        StringBuilder sb = new StringBuilder(this.length + 32);
+        for (int i = 0; i < this.slots.length; i++) {
+            sb.append(this.literals[i]).append(this.slots[i] == USER ? user : time);
+        }
+        return sb.append(this.literals[this.slots.length]).toString();
+    }
+
+    /**
+     * Whether this is a message to the player rather than a console command
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if the rendered text should be sent to the player
+     */
+    public boolean isMessage() {
+        return this.message;
+    }
+
+    /**
+     * Whether the template contains a {@code %t} placeholder
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if a readable time is needed to render
+     */
+    public boolean usesTime() {
+        return this.usesTime;
+    }
+
+}
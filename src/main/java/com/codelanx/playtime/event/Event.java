@@ -16,29 +16,39 @@
  */
 package com.codelanx.playtime.event;
 
+import com.codelanx.playtime.data.Timer;
 import java.util.List;
 
 /**
- * An Event object used for events with flatfile storage
+ * A configured event, fired when a player reaches a value of a timer
  * 
  * @since 1.4.0
  * @author 1Rogue
- * @version 1.4.0
+ * @version 2.0.0
  */
 public class Event {
     
     private final String eventName;
-    private final String timer;
+    private final Timer timer;
     private final Integer trigger;
     private final List<String> commands;
+    private final CommandTemplate[] templates;
+    private final boolean usesTime;
     private final boolean repeat;
     private final boolean login;
     
-    public Event(String eventName, String timer, Integer trigger, List<String> commands, boolean repeat, boolean login) {
+    public Event(String eventName, Timer timer, Integer trigger, List<String> commands, boolean repeat, boolean login) {
         this.eventName = eventName;
         this.timer = timer;
         this.trigger = trigger;
         this.commands = commands;
+        this.templates = new CommandTemplate[commands.size()];
+        boolean time = false;
+        for (int i = 0; i < this.templates.length; i++) {
+            this.templates[i] = new CommandTemplate(commands.get(i));
+            time |= this.templates[i].usesTime();
+        }
+        this.usesTime = time;
         this.repeat = repeat;
         this.login = login;
     }
@@ -59,11 +69,23 @@ public class Event {
      * Returns the timer used for the event
      * 
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      * 
      * @return Event timer type
      */
     public String getType() {
+        return this.timer.getColumn();
+    }
+
+    /**
+     * Returns the timer used for the event
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Event timer
+     */
+    public Timer getTimer() {
         return this.timer;
     }
     
@@ -91,6 +113,30 @@ public class Event {
         return this.commands;
     }
     
+    /**
+     * Returns the event's commands, compiled for rendering
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Event command templates
+     */
+    public CommandTemplate[] getTemplates() {
+        return this.templates;
+    }
+
+    /**
+     * Returns whether any of the event's commands use the timer value
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if a readable time is needed to fire the event
+     */
+    public boolean usesTime() {
+        return this.usesTime;
+    }
+    
     /**
      * Whether the event repeats every x iterations of the time trigger
      * 
@@ -16,125 +16,111 @@
  */
 package com.codelanx.playtime.event;
 
-import static com.codelanx.playtime.Playtime.__;
 import com.codelanx.playtime.Playtime;
-import com.codelanx.playtime.runnable.EventRunnable;
+import com.codelanx.playtime.callable.ConsoleCommandCallable;
+import com.codelanx.playtime.callable.SendMessageCallable;
+import com.codelanx.playtime.config.ConfigurationLoader;
+import com.codelanx.playtime.data.Timer;
+import com.codelanx.playtime.executables.DispatchQueue;
 import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.bukkit.Bukkit;
-import org.bukkit.command.ConsoleCommandSender;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 /**
+ * Loads the events in events.yml and fires them for players. Milestone events
+ * are looked up in a {@link MilestoneIndex} as each minute is counted, so only
+ * the player whose timer moved is ever checked.
  *
  * @since 1.4.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class EventHandler {
 
     private final Playtime plugin;
     private final File file;
     private final Map<String, Event> events = new HashMap<String, Event>();
+    private final MilestoneIndex index;
     private YamlConfiguration yaml = null;
 
     public EventHandler(Playtime plugin) {
         this.plugin = plugin;
         this.file = new File(this.plugin.getDataFolder(), "events.yml");
         loadEvents();
+        this.index = new MilestoneIndex(this.events.values());
     }
     
     /**
      * Loads the file configuration for events and adds the events
      * 
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      */
     private void loadEvents() {
-        if (this.plugin.getDataFolder().exists()) {
-            this.plugin.getDataFolder().mkdir();
-        }
         if (!this.file.exists()) {
-            this.plugin.saveResource("events.yml", true);
-            return;
+            this.plugin.saveResource("events.yml", false);
         }
         this.yaml = YamlConfiguration.loadConfiguration(this.file);
         ConfigurationSection eventSection = this.yaml.getConfigurationSection("events");
         if (eventSection == null) {
             return;
         }
-        int interval = this.plugin.getConfigurationLoader().getInt("events.interval");
-        if (this.plugin.getDataManager().getDataHandler().getName().equals("flatfile")) {
-            for (String s : eventSection.getKeys(false)) {
-                evalYAMLEvent(s, this.yaml.getBoolean("events." + s + ".at-login"));
-            }
-        } else {
-            for (String s : eventSection.getKeys(false)) {
-                evalEvent(s, interval, this.yaml.getBoolean("events." + s + ".at-login"));
-            }
+        for (String s : eventSection.getKeys(false)) {
+            evalEvent(s);
         }
-
     }
 
     /**
-     * Gets an event for an sql manager and adds it accordingly
+     * Reads an event from the events file and adds it
      * 
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      * 
      * @param name The event name
-     * @param interval The interval at which runnable checks will repeat at in seconds
-     * @param login If the event is a login event
      */
-    private void evalEvent(String name, int interval, boolean login) {
-        String timer = this.yaml.getString("events." + name + ".type");
-        if (!timer.equalsIgnoreCase("deathtime") && !timer.equalsIgnoreCase("onlinetime") && !timer.equalsIgnoreCase("playtime")) {
-            timer = "playtime";
+    private void evalEvent(String name) {
+        Timer timer;
+        try {
+            timer = Timer.fromColumn(this.yaml.getString("events." + name + ".type"));
+        } catch (IllegalArgumentException e) {
+            timer = Timer.PLAYTIME;
         }
         List<String> commands = this.yaml.getStringList("events." + name + ".commands");
         if (commands.isEmpty()) {
             return;
         }
-        Integer minutes = this.yaml.getInt("events." + name + ".time");
-        if (login) {
-            this.events.put(name, new Event(name, timer, minutes, commands, this.yaml.getBoolean("events." + name + ".repeat"), login));
-        } else {
-            this.plugin.getExecutiveManager().runAsyncTaskRepeat(new EventRunnable(this.plugin, name, timer, minutes, (minutes + interval), commands, this.yaml.getBoolean("events." + name + ".repeat")), interval * 60L, interval * 60L);
-        }
+        int minutes = this.yaml.getInt("events." + name + ".time");
+        this.events.put(name, new Event(name, timer, minutes, commands,
+                this.yaml.getBoolean("events." + name + ".repeat"),
+                this.yaml.getBoolean("events." + name + ".at-login")));
     }
-    
+
     /**
-     * Gets an event for a flatfile manager and adds it accordingly
-     * 
-     * @since 1.4.0
-     * @version 1.4.0
-     * 
-     * @param name The event name
-     * @param login If the event is a login event
+     * Checks whether events.yml has been changed since it was loaded
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if the file no longer matches the events in use
      */
-    private void evalYAMLEvent(String name, boolean login) {
-        String timer = this.yaml.getString("events." + name + ".type");
-        if (!timer.equalsIgnoreCase("deathtime") && !timer.equalsIgnoreCase("onlinetime") && !timer.equalsIgnoreCase("playtime")) {
-            timer = "playtime";
-        }
-        List<String> commands = this.yaml.getStringList("events." + name + ".commands");
-        if (commands.isEmpty()) {
-            return;
+    public boolean isStale() {
+        if (!this.file.exists()) {
+            return false;
         }
-        Integer minutes = this.yaml.getInt("events." + name + ".time");
-        boolean repeat = this.yaml.getBoolean("events." + name + ".repeat");
-        this.events.put(name, new Event(name, timer, minutes, commands, this.yaml.getBoolean("events." + name + ".repeat"), login));
+        return !ConfigurationLoader.diff(this.yaml, YamlConfiguration.loadConfiguration(this.file)).isEmpty();
     }
 
     /**
-     * Gets a list of static (non-runnable) events in use. This will only return
-     * login events if you are using an sql manager.
+     * Gets the events in use, including login events
      * 
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      * 
      * @return Map of events in use
      */
@@ -143,91 +129,86 @@ public class EventHandler {
     }
 
     /**
-     * Fires static events manually for a provided user
-     * 
-     * @since 1.4.0
-     * @version 1.5.0
-     * 
-     * @param fire A list of names for events to fire
-     * @param username The user to fire events for
+     * Returns the index used to find milestone events
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The milestone index
      */
-    public void fireEvents(List<String> fire, String username) {
-        /*ConsoleCommandSender ccs = Bukkit.getConsoleSender();
-        for (String s : fire) {
-            for (String c : this.events.get(s).getCommands()) {
-                if (this.isMessage(c)) {
-                    Bukkit.getPlayer(username).sendMessage(__(this.replaceMessage(c).replace("%u", username).replace("%t", this.plugin.getDataManager().getDataHandler().getValue(this.events.get(s).getType(), username) + "")));
-                } else {
-                    Bukkit.dispatchCommand(ccs, c.replace("%u", username).replace("%t", this.plugin.getDataManager().getDataHandler().getValue(this.events.get(s).getType(), username) + ""));
-                }
-            }
-        }*/
+    public MilestoneIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Fires any milestone events a player passed when their timer moved. This
+     * is called for every counted minute, and does nothing unless an event is
+     * passed.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param name The player's name
+     * @param timer The timer that changed
+     * @param from The previous value of the timer
+     * @param to The new value of the timer
+     */
+    public void tick(String name, Timer timer, int from, int to) {
+        for (Event e : this.index.crossed(timer, from, to)) {
+            this.fire(e, name, to);
+        }
     }
     
     /**
-     * Fires login events for a particular user
+     * Fires login events for a particular user, once their timers are known
      * 
      * @since 1.4.0
-     * @version 1.5.0
+     * @version 2.0.0
      * 
+     * @param uuid The uuid of the user to fire events for
      * @param username The user to fire events for
      */
-    public void fireLoginEvents(String username) {
-        /*ConsoleCommandSender ccs = Bukkit.getConsoleSender();
-        for (Event e : this.events.values()) {
+    public void fireLoginEvents(UUID uuid, final String username) {
+        for (final Event e : this.events.values()) {
             if (e.isLoginEvent()) {
-                for (String c : e.getCommands()) {
-                    if (this.isMessage(c.split(" ")[0])) {
-                        Bukkit.getPlayer(username).sendMessage(__(this.replaceMessage(c).replace("%u", username).replace("%t", this.toReadable(this.plugin.getDataManager().getDataHandler().getValue(e.getType(), username)))));
-                    } else {
-                        Bukkit.dispatchCommand(ccs, c.replace("%u", username).replace("%t", this.plugin.getDataManager().getDataHandler().getValue(e.getType(), username) + ""));
+                CompletableFuture<Integer> value = this.plugin.getDataManager().getValueAsync(e.getType(), uuid);
+                value.thenAccept(new Consumer<Integer>() {
+                    public void accept(Integer time) {
+                        fire(e, username, time);
                     }
-                }
+                });
             }
-        }*/
-    }
-
-    /**
-     * Determines if a command for an event is a messaging command
-     * 
-     * @since 1.4.0
-     * @version 1.4.0
-     * 
-     * @param test The commandLabel to test
-     * @return true if messaging command, false if not
-     */
-    public boolean isMessage(String test) {
-        return test.equalsIgnoreCase("msg") || test.equalsIgnoreCase("message") || test.equalsIgnoreCase("whipser") || test.equalsIgnoreCase("w") || test.equalsIgnoreCase("m") || test.equalsIgnoreCase("t") || test.equalsIgnoreCase("tell");
+        }
     }
 
     /**
-     * Replaces the first two arguments of a command, intended for messaging
-     * commands.
-     * 
-     * @since 1.4.0
-     * @version 1.4.0
-     * 
-     * @param test The raw command to edit
-     * @return The message to send to a player
+     * Queues an event's commands for a player on the main thread
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param event The event to fire
+     * @param username The player to fire it for
+     * @param time The value of the event's timer for the player
      */
-    public String replaceMessage(String test) {
-        String[] back = test.split(" ");
-        if (back.length >= 3) {
-            StringBuilder sb = new StringBuilder();
-            for (int i = 2; i < back.length; i++) {
-                sb.append(back[i]).append(" ");
+    private void fire(Event event, String username, int time) {
+        DispatchQueue queue = this.plugin.getExecutiveManager().getDispatchQueue();
+        String readable = event.usesTime() ? this.toReadable(time) : null;
+        for (CommandTemplate t : event.getTemplates()) {
+            if (t.isMessage()) {
+                queue.submit(new SendMessageCallable(username, t.render(username, readable)));
+            } else {
+                queue.submit(new ConsoleCommandCallable(t.render(username, readable)));
             }
-            return sb.toString().trim();
         }
-        return test;
     }
-    
+
     /**
      * Returns a readable string, converting a value of minutes into hours and
      * minutes.
      * 
      * @since 1.4.0
-     * @version 1.4.1
+     * @version 2.0.0
      * 
      * @param time The time in minutes to evaluate
      * @return The time in hours and minutes in readable form.
@@ -235,6 +216,6 @@ public class EventHandler {
     public String toReadable(int time) {
         long minutes = time % 60;
         long hours = time / 60;
-        return ((hours >= 1) ? hours + " " + ((hours != 1) ? this.plugin.getCipher().getString("variables.hours") : this.plugin.getCipher().getString("variables.hours")) + " " : "") + minutes + " " + ((minutes != 1) ? this.plugin.getCipher().getString("variables.minutes") : this.plugin.getCipher().getString("variables.minute")) + ".";
+        return ((hours >= 1) ? hours + " " + ((hours != 1) ? this.plugin.getCipher().getString("variables.hours") : this.plugin.getCipher().getString("variables.hour")) + " " : "") + minutes + " " + ((minutes != 1) ? this.plugin.getCipher().getString("variables.minutes") : this.plugin.getCipher().getString("variables.minute")) + ".";
     }
 }
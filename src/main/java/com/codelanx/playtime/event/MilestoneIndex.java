@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.event;
+
+import com.codelanx.playtime.data.Timer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable index of the non-login {@link Event}s, grouped by timer. One
+ * time events are kept in sorted threshold order so the events a player
+ * crosses can be found with a binary search, and repeating events are kept
+ * in a short list per timer. Looking up the events for a tick never touches
+ * the database.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class MilestoneIndex {
+
+    private final int[][] thresholds = new int[Timer.values().length][];
+    private final Event[][][] once = new Event[Timer.values().length][][];
+    private final Event[][] repeating = new Event[Timer.values().length][];
+
+    /**
+     * Constructor for {@link MilestoneIndex}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param events The events to index. Login events are ignored.
+     */
+    public MilestoneIndex(Collection<Event> events) {
+        for (Timer t : Timer.values()) {
+            TreeMap<Integer, List<Event>> byTrigger = new TreeMap<Integer, List<Event>>();
+            List<Event> repeat = new ArrayList<Event>();
+            for (Event e : events) {
+                if (e.isLoginEvent() || e.getTimer() != t) {
+                    continue;
+                }
+                if (e.isRepeated()) {
+                    if (e.getTrigger() > 0) {
+                        repeat.add(e);
+                    }
+                } else {
+                    List<Event> at = byTrigger.get(e.getTrigger());
+                    if (at == null) {
+                        at = new ArrayList<Event>();
+                        byTrigger.put(e.getTrigger(), at);
+                    }
+                    at.add(e);
+                }
+            }
+            int i = t.ordinal();
+            this.thresholds[i] = new int[byTrigger.size()];
+            this.once[i] = new Event[byTrigger.size()][];
+            int j = 0;
+            for (Map.Entry<Integer, List<Event>> ent : byTrigger.entrySet()) {
+                this.thresholds[i][j] = ent.getKey();
+                this.once[i][j++] = ent.getValue().toArray(new Event[ent.getValue().size()]);
+            }
+            this.repeating[i] = repeat.toArray(new Event[repeat.size()]);
+        }
+    }
+
+    /**
+     * Returns the events a player passes when their timer goes from one value
+     * to another. A one time event is passed if its trigger lies in
+     * {@code (from, to]}, and a repeating event is passed if a multiple of its
+     * trigger does.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param timer The timer that changed
+     * @param from The previous value of the timer
+     * @param to The new value of the timer
+     * @return The passed events, or an empty list if there are none
+     */
+    public List<Event> crossed(Timer timer, int from, int to) {
+        if (to <= from) {
+            return Collections.emptyList();
+        }
+        int i = timer.ordinal();
+        List<Event> back = null;
+        int[] sorted = this.thresholds[i];
+        if (sorted.length > 0 && to >= sorted[0] && from < sorted[sorted.length - 1]) {
+            int start = Arrays.binarySearch(sorted, from + 1);
+            if (start < 0) {
+                start = -start - 1;
+            }
+            for (int j = start; j < sorted.length && sorted[j] <= to; j++) {
+                if (back == null) {
+                    back = new ArrayList<Event>();
+                }
+                back.addAll(Arrays.asList(this.once[i][j]));
+            }
+        }
+        for (Event e : this.repeating[i]) {
+            if (to / e.getTrigger() > from / e.getTrigger()) {
+                if (back == null) {
+                    back = new ArrayList<Event>();
+                }
+                back.add(e);
+            }
+        }
+        return back == null ? Collections.<Event>emptyList() : back;
+    }
+
+    /**
+     * Checks whether any events are indexed for a timer
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param timer The timer to check
+     * @return true if a tick of this timer could fire an event
+     */
+    public boolean hasEvents(Timer timer) {
+        return this.thresholds[timer.ordinal()].length > 0 || this.repeating[timer.ordinal()].length > 0;
+    }
+
+}
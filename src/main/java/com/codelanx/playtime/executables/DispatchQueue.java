@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.executables;
+
+import com.codelanx.playtime.Playtime;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+
+/**
+ * Collects actions that must run on the main thread, such as event commands
+ * and messages, from any thread and runs them in a single task per tick. Each
+ * tick only spends up to its time budget running actions, and anything left
+ * over waits for the next tick, so a burst of actions is spread out instead of
+ * stalling the server.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class DispatchQueue implements Runnable {
+
+    private final Playtime plugin;
+    private volatile long budget;
+    private final Queue<Callable<?>> pending = new ConcurrentLinkedQueue<Callable<?>>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /**
+     * Constructor for {@link DispatchQueue}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     * @param budget Time (in milliseconds) each tick may spend on actions
+     */
+    public DispatchQueue(Playtime plugin, long budget) {
+        this.plugin = plugin;
+        this.setBudget(budget);
+    }
+
+    /**
+     * Sets how long each tick may spend on actions, taking effect from the
+     * next tick
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param budget Time (in milliseconds) each tick may spend on actions
+     */
+    public void setBudget(long budget) {
+        this.budget = TimeUnit.MILLISECONDS.toNanos(Math.max(1, budget));
+    }
+
+    /**
+     * Queues an action to be run on the main thread. Safe to call from any
+     * thread.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param action The action to run
+     */
+    public void submit(Callable<?> action) {
+        this.pending.offer(action);
+        this.schedule();
+    }
+
+    /**
+     * Runs queued actions until the queue is empty or the tick's budget is
+     * spent, and schedules another run if any actions are left.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void run() {
+        long start = System.nanoTime();
+        Callable<?> action;
+        while ((action = this.pending.poll()) != null) {
+            try {
+                action.call();
+            } catch (Exception e) {
+                this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
+            }
+            if (System.nanoTime() - start >= this.budget) {
+                break;
+            }
+        }
+        this.scheduled.set(false);
+        if (!this.pending.isEmpty()) {
+            if (this.plugin.getDebug() >= 2) {
+                this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("runnable.dispatch.deferred", this.pending.size()));
+            }
+            this.schedule();
+        }
+    }
+
+    /**
+     * Schedules a run for the next tick, unless one is already scheduled
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    private void schedule() {
+        if (this.plugin.isEnabled() && this.scheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTask(this.plugin, this);
+        }
+    }
+
+    /**
+     * Returns the number of actions waiting to be run
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Queued action count
+     */
+    public int getPending() {
+        return this.pending.size();
+    }
+
+}
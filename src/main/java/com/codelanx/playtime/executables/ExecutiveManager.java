@@ -17,82 +17,360 @@
 package com.codelanx.playtime.executables;
 
 import com.codelanx.playtime.Playtime;
-import java.util.ArrayList;
+import com.codelanx.playtime.config.ConfigurationLoader;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
 
 /**
  * Wink wink. I'm so punny
  *
+ * Playtime's work is split between two pools. Repeating tasks run on a small
+ * timer pool, and one-off work such as database lookups, resets, conversions
+ * and http requests runs on a bounded I/O pool. Delayed one-off tasks wait on
+ * the timer pool and are then handed to the I/O pool.
+ *
  * @since 1.4.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class ExecutiveManager {
     
     private final Playtime plugin;
-    private final ScheduledExecutorService es;
-    private final List<ScheduledFuture<?>> executives = new ArrayList<ScheduledFuture<?>>();
+    private final PoolMetrics timerMetrics = new PoolMetrics("timer");
+    private final PoolMetrics ioMetrics = new PoolMetrics("io");
+    private final ScheduledThreadPoolExecutor timers;
+    private final ThreadPoolExecutor io;
+    private final long drainTimeout;
+    private final DispatchQueue dispatch;
+    private final Queue<Future<?>> executives = new ConcurrentLinkedQueue<Future<?>>();
+    private final Executor main = new Executor() {
+        public void execute(Runnable r) {
+            if (Bukkit.isPrimaryThread()) {
+                r.run();
+            } else {
+                Bukkit.getScheduler().runTask(plugin, r);
+            }
+        }
+    };
     
     public ExecutiveManager(Playtime plugin) {
         this.plugin = plugin;
-        this.es = Executors.newScheduledThreadPool(10);
+        ConfigurationLoader config = plugin.getConfigurationLoader();
+        int timerThreads = config.getInt("executors.timer-threads");
+        int ioThreads = config.getInt("executors.io-threads");
+        int queueSize = config.getInt("executors.queue-size");
+        int drain = config.getInt("executors.drain-timeout");
+        this.drainTimeout = drain >= 0 ? drain : 5;
+        this.timers = new TimerPool(timerThreads > 0 ? timerThreads : 2, this.timerMetrics);
+        this.io = new IOPool(ioThreads > 0 ? ioThreads : 4, queueSize > 0 ? queueSize : 1000, this.ioMetrics);
+        this.dispatch = new DispatchQueue(plugin, config.getInt("events.dispatch-budget"));
     }
     
     /**
      * Runs a repeating asynchronous task under Playtime
      * 
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      * 
      * @param r The runnable to execute
      * @param startAfter Time (in seconds) to wait before execution
      * @param delay Time (in seconds) between execution to wait
+     * @return The scheduled task, which can be cancelled on its own
      */
-    public void runAsyncTaskRepeat(Runnable r, long startAfter, long delay) {
-        this.executives.add(this.es.scheduleWithFixedDelay(r, startAfter, delay, TimeUnit.SECONDS));
+    public ScheduledFuture<?> runAsyncTaskRepeat(Runnable r, long startAfter, long delay) {
+        ScheduledFuture<?> task = this.timers.scheduleWithFixedDelay(r, startAfter, delay, TimeUnit.SECONDS);
+        this.executives.add(task);
+        return task;
     }
     
     /**
-     * Runs a single asynchronous task under Playtime
+     * Runs a single asynchronous task under Playtime. If the I/O pool is full
+     * the task is dropped and logged, rather than the rejection being thrown
+     * at the caller or lost on the timer thread.
      * 
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      * 
      * @param r The runnable to execute
      * @param delay Time (in seconds) to wait before execution
+     * @return false if the task was dropped straight away. A delayed task
+     *         dropped once its delay is up is only logged.
      */
-    public void runAsyncTask(Runnable r, long delay) {
-        this.executives.add(this.es.schedule(r, delay, TimeUnit.SECONDS));
+    public boolean runAsyncTask(final Runnable r, long delay) {
+        try {
+            if (delay <= 0) {
+                this.io.execute(r);
+            } else {
+                this.timers.schedule(new Runnable() {
+                    public void run() {
+                        try {
+                            io.execute(r);
+                        } catch (RejectedExecutionException ex) {
+                            rejected(ex);
+                        }
+                    }
+                }, delay, TimeUnit.SECONDS);
+            }
+            return true;
+        } catch (RejectedExecutionException ex) {
+            this.rejected(ex);
+            return false;
+        }
     }
     
     /**
-     * Runs a Callable
+     * Runs a Callable. The returned future is tracked until it is done, and
+     * is cancelled with the rest of Playtime's tasks.
      * 
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      * 
+     * @param <T> The type of the callable's result
      * @param c The callable to execute
      * @param delay Time (in seconds) to wait before execution
+     * @return The pending result, which can be cancelled on its own
      */
-    public void runCallable(Callable<?> c, long delay) {
-        this.es.schedule(c, delay, TimeUnit.SECONDS);
+    public <T> Future<T> runCallable(final Callable<T> c, long delay) {
+        FutureTask<T> task = new FutureTask<T>(c) {
+            @Override
+            protected void setException(Throwable t) {
+                plugin.getLogger().log(Level.SEVERE, "{0}", plugin.getDebug() >= 3 ? t : "null");
+                super.setException(t);
+            }
+
+            @Override
+            protected void done() {
+                executives.remove(this);
+            }
+        };
+        this.executives.add(task);
+        if (!this.runAsyncTask(task, delay)) {
+            task.cancel(false);
+        }
+        return task;
+    }
+
+    /**
+     * Logs a task the I/O pool rejected and returns a future failed with the
+     * rejection, for lookups that could not be started
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param <T> The type of the lookup's result
+     * @param ex The rejection
+     * @return A future completed with the rejection
+     */
+    public <T> CompletableFuture<T> rejected(RejectedExecutionException ex) {
+        this.plugin.getLogger().log(Level.WARNING, this.plugin.getCipher().getString("main.task-rejected", ex.getMessage()));
+        CompletableFuture<T> back = new CompletableFuture<T>();
+        back.completeExceptionally(ex);
+        return back;
     }
     
     /**
-     * Cancels all running tasks/threads under Playtime.
+     * Returns the I/O pool backing Playtime's asynchronous tasks, for use
+     * with {@link java.util.concurrent.CompletableFuture}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The asynchronous executor
+     */
+    public Executor getAsyncExecutor() {
+        return this.io;
+    }
+
+    /**
+     * Returns an executor that runs tasks on the server's main thread. Tasks
+     * submitted from the main thread are run immediately.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The main thread executor
+     */
+    public Executor getMainThreadExecutor() {
+        return this.main;
+    }
+
+    /**
+     * Returns the queue used to run batches of actions on the main thread
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The main thread dispatch queue
+     */
+    public DispatchQueue getDispatchQueue() {
+        return this.dispatch;
+    }
+
+    /**
+     * Returns the statistics for each of Playtime's thread pools
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The timer and I/O pool statistics
+     */
+    public List<PoolMetrics> getMetrics() {
+        return Arrays.asList(this.timerMetrics, this.ioMetrics);
+    }
+
+    /**
+     * Cancels all running tasks/threads under Playtime. Repeating and delayed
+     * tasks are cancelled, while work already handed to the I/O pool is given
+     * up to the drain timeout to finish before it is interrupted.
      * 
      * @since 1.4.0
-     * @version 1.4.0
+     * @version 2.0.0
      */
     public void cancelAllTasks() {
-        for (ScheduledFuture<?> s : this.executives) {
+        Future<?> s;
+        while ((s = this.executives.poll()) != null) {
             s.cancel(false);
         }
+        this.timers.shutdown();
+        this.io.shutdown();
+        try {
+            if (!this.io.awaitTermination(this.drainTimeout, TimeUnit.SECONDS)) {
+                this.plugin.getLogger().log(Level.WARNING, this.plugin.getCipher().getString("main.drain-timeout",
+                        this.io.getQueue().size() + this.io.getActiveCount(), this.drainTimeout));
+            }
+            this.timers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.io.shutdownNow();
+        this.timers.shutdownNow();
+    }
+
+    /**
+     * Names the threads of a pool
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "Playtime-" + this.name + "-" + this.count.incrementAndGet());
+        }
+
+    }
+
+    /**
+     * The pool for repeating and delayed tasks. A task's wait time is how late
+     * it started compared to when it was scheduled.
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    private static class TimerPool extends ScheduledThreadPoolExecutor {
+
+        private final PoolMetrics metrics;
+        private final ThreadLocal<long[]> started = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                return new long[2];
+            }
+        };
+
+        private TimerPool(int threads, PoolMetrics metrics) {
+            super(threads, new NamedThreadFactory(metrics.getName()));
+            this.metrics = metrics;
+            this.setRemoveOnCancelPolicy(true);
+            this.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            metrics.attach(this);
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            long[] times = this.started.get();
+            times[0] = System.nanoTime();
+            times[1] = r instanceof Delayed ? Math.max(0, -((Delayed) r).getDelay(TimeUnit.NANOSECONDS)) : 0;
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            long[] times = this.started.get();
+            this.metrics.recordTask(times[1], System.nanoTime() - times[0]);
+        }
+
+    }
+
+    /**
+     * The bounded pool for one-off work. Tasks submitted once the queue is
+     * full are rejected rather than allowed to pile up.
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    private static class IOPool extends ThreadPoolExecutor {
+
+        private final PoolMetrics metrics;
+
+        private IOPool(int threads, int queueSize, final PoolMetrics metrics) {
+            super(threads, threads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueSize),
+                    new NamedThreadFactory(metrics.getName()),
+                    new RejectedExecutionHandler() {
+                        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                            metrics.recordRejected();
+                            throw new RejectedExecutionException("Playtime's " + metrics.getName() + " pool is "
+                                    + (executor.isShutdown() ? "shut down" : "full"));
+                        }
+                    });
+            this.metrics = metrics;
+            this.allowCoreThreadTimeOut(true);
+            metrics.attach(this);
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            final long queued = System.nanoTime();
+            super.execute(new Runnable() {
+                public void run() {
+                    long start = System.nanoTime();
+                    try {
+                        command.run();
+                    } finally {
+                        metrics.recordTask(start - queued, System.nanoTime() - start);
+                    }
+                }
+            });
+        }
+
     }
 
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.executables;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running statistics for one of the thread pools in {@link ExecutiveManager}
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class PoolMetrics {
+
+    private final String name;
+    private final AtomicLong tasks = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong runTime = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile ThreadPoolExecutor pool;
+
+    /**
+     * Constructor for {@link PoolMetrics}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param name The name of the pool
+     */
+    PoolMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Sets the pool these statistics describe
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param pool The measured pool
+     */
+    void attach(ThreadPoolExecutor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Records a finished task
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param wait Time (in nanoseconds) the task spent queued
+     * @param run Time (in nanoseconds) the task spent running
+     */
+    void recordTask(long wait, long run) {
+        this.tasks.incrementAndGet();
+        this.waitTime.addAndGet(wait);
+        this.runTime.addAndGet(run);
+    }
+
+    /**
+     * Records a task that was turned away because the pool was full
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    void recordRejected() {
+        this.rejected.incrementAndGet();
+    }
+
+    /**
+     * Returns the name of the pool
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The pool name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the number of threads currently running a task
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Active thread count
+     */
+    public int getActive() {
+        return this.pool == null ? 0 : this.pool.getActiveCount();
+    }
+
+    /**
+     * Returns the number of tasks waiting for a thread
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Queue depth
+     */
+    public int getQueued() {
+        return this.pool == null ? 0 : this.pool.getQueue().size();
+    }
+
+    /**
+     * Returns the number of tasks that have finished
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Completed task count
+     */
+    public long getCompleted() {
+        return this.tasks.get();
+    }
+
+    /**
+     * Returns the average time a task waited before it started running
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Average queue wait in milliseconds
+     */
+    public double getAverageWait() {
+        long count = this.tasks.get();
+        return count == 0 ? 0 : (this.waitTime.get() / (double) count) / 1000000D;
+    }
+
+    /**
+     * Returns the average time a task spent running
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Average run time in milliseconds
+     */
+    public double getAverageRun() {
+        long count = this.tasks.get();
+        return count == 0 ? 0 : (this.runTime.get() / (double) count) / 1000000D;
+    }
+
+    /**
+     * Returns the number of tasks turned away because the pool was full
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Rejected task count
+     */
+    public long getRejected() {
+        return this.rejected.get();
+    }
+
+}
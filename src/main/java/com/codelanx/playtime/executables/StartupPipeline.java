@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.executables;
+
+import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.lang.Cipher;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Runs the stages of enabling the plugin. Stages that only need each other's
+ * results are started as soon as the stages they depend on finish, and run
+ * alongside any others that are ready, while stages that must run on the
+ * server thread are run in place. The time each stage took is kept so it can
+ * be reported once the plugin is up.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class StartupPipeline {
+
+    private final Playtime plugin;
+    private final ExecutorService workers;
+    private final Map<String, CompletableFuture<Void>> stages = new LinkedHashMap<String, CompletableFuture<Void>>();
+    private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+
+    /**
+     * Constructor for {@link StartupPipeline}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param plugin The main {@link Playtime} instance
+     */
+    public StartupPipeline(Playtime plugin) {
+        this.plugin = plugin;
+        final AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Playtime-Startup-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Starts a stage off the server thread once every stage it depends on has
+     * finished. If any of them failed, the stage is skipped.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param name The name of the stage
+     * @param task The work of the stage
+     * @param after The names of the stages that must finish first
+     * @return This pipeline, for chaining
+     * @throws IllegalArgumentException If a stage depended on has not been
+     *                                  added yet
+     */
+    public StartupPipeline stage(final String name, final Runnable task, String... after) {
+        List<CompletableFuture<Void>> deps = new ArrayList<CompletableFuture<Void>>();
+        for (String dep : after) {
+            CompletableFuture<Void> f = this.stages.get(dep);
+            if (f == null) {
+                throw new IllegalArgumentException("Stage '" + name + "' depends on unknown stage '" + dep + "'");
+            }
+            deps.add(f);
+        }
+        synchronized (this.timings) {
+            //holds the stage's place, so it is reported in the order added
+            this.timings.put(name, null);
+        }
+        CompletableFuture<Void> ready = CompletableFuture.allOf(deps.toArray(new CompletableFuture<?>[deps.size()]));
+        this.stages.put(name, ready.thenRunAsync(new Runnable() {
+            public void run() {
+                time(name, task);
+            }
+        }, this.workers));
+        return this;
+    }
+
+    /**
+     * Runs a stage on the calling thread straight away
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param name The name of the stage
+     * @param task The work of the stage
+     * @return This pipeline, for chaining
+     */
+    public StartupPipeline run(String name, Runnable task) {
+        this.time(name, task);
+        return this;
+    }
+
+    /**
+     * Waits for every stage started with
+     * {@link #stage(String, Runnable, String...)} to finish
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if every stage finished without error
+     */
+    public boolean await() {
+        boolean ok = true;
+        try {
+            for (Map.Entry<String, CompletableFuture<Void>> ent : this.stages.entrySet()) {
+                try {
+                    ent.getValue().join();
+                } catch (CompletionException ex) {
+                    ok = false;
+                }
+            }
+        } finally {
+            this.workers.shutdown();
+        }
+        return ok;
+    }
+
+    /**
+     * Logs how long each finished stage took, in the order they were added
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void report() {
+        synchronized (this.timings) {
+            for (Map.Entry<String, Long> ent : this.timings.entrySet()) {
+                if (ent.getValue() == null) {
+                    continue;
+                }
+                this.plugin.getLogger().info(this.getString("main.stage", ent.getKey(), TimeUnit.NANOSECONDS.toMillis(ent.getValue())));
+            }
+        }
+    }
+
+    /**
+     * Runs a stage and records how long it took. A failing stage is logged
+     * here, so stages skipped because of it are not reported as well.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param name The name of the stage
+     * @param task The work of the stage
+     */
+    private void time(String name, Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, this.getString("main.stage-error", name), ex);
+            throw ex;
+        }
+        long taken = System.nanoTime() - start;
+        synchronized (this.timings) {
+            this.timings.put(name, taken);
+        }
+    }
+
+    /**
+     * Returns a message from the language file, or the bare key if the
+     * language file failed to load
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param key The path of the message
+     * @param vars The values to put in the message
+     * @return The message
+     */
+    private String getString(String key, Object... vars) {
+        Cipher lang = this.plugin.getCipher();
+        return lang == null ? key : lang.getString(key, vars);
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.executables;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A blocking token bucket rate limiter. Tokens refill continuously at a fixed
+ * rate up to the bucket's capacity, and each call to {@link #acquire()} takes
+ * one, waiting if none are left.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double perNano;
+    private double tokens;
+    private long last;
+
+    /**
+     * Constructor for {@link TokenBucket}
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param rate Tokens added per second
+     * @param capacity The most tokens that can be saved up
+     */
+    public TokenBucket(double rate, int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.perNano = Math.max(rate, 0.001D) / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = this.capacity;
+        this.last = System.nanoTime();
+    }
+
+    /**
+     * Takes a token, waiting until one is available
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            this.tokens = Math.min(this.capacity, this.tokens + (now - this.last) * this.perNano);
+            this.last = now;
+            //take the token now, going into debt if needed, and wait it off
+            this.tokens -= 1;
+            wait = this.tokens >= 0 ? 0 : (long) (-this.tokens / this.perNano);
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+}
@@ -20,6 +20,7 @@ import com.codelanx.playtime.Playtime;
 import com.codelanx.playtime.listener.listeners.*;
 import java.util.HashMap;
 import java.util.Map;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 
 /**
@@ -27,40 +28,69 @@ import org.bukkit.event.Listener;
  *
  * @since 1.4.1
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class ListenerManager {
     
+    private static final String[] MANAGED = {"stats", "afk", "death", "event", "online"};
     private final Playtime plugin;
     private final Map<String, Listener> listeners = new HashMap();
     
     public ListenerManager(Playtime plugin) {
         
         this.plugin = plugin;
-        
-        if (plugin.getPlayerHandler() != null) {
-            this.listeners.put("afk", new AFKListener(plugin, plugin.getConfigurationLoader().getBoolean("afk.check-chat")));
+        this.register();
+    }
+
+    /**
+     * Registers the listeners enabled in the configuration
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    private void register() {
+        Map<String, Listener> enabled = new HashMap<String, Listener>();
+        enabled.put("stats", new StatsListener(this.plugin));
+        if (this.plugin.getPlayerHandler() != null) {
+            enabled.put("afk", new AFKListener(this.plugin, this.plugin.getConfigurationLoader().getBoolean("afk.check-chat")));
+        }
+        if (this.plugin.getConfigurationLoader().getBoolean("check.death-time")) {
+            enabled.put("death", new DeathListener(this.plugin));
         }
-        if (plugin.getConfigurationLoader().getBoolean("check.death-time")) {
-            this.listeners.put("death", new DeathListener(plugin));
+        if (this.plugin.getEventHandler() != null) {
+            enabled.put("event", new EventListener(this.plugin));
         }
-        /*if (plugin.getEventHandler() != null) {
-            this.listeners.put("event", new EventListener(plugin));
-        }*/
-        if (plugin.getConfigurationLoader().getBoolean("check.online-time")) {
-            this.listeners.put("online", new OnlineListener(plugin));
+        if (this.plugin.getConfigurationLoader().getBoolean("check.online-time")) {
+            enabled.put("online", new OnlineListener(this.plugin));
         }
         
-        for (Listener l : this.listeners.values()) {
-            plugin.getServer().getPluginManager().registerEvents(l, plugin);
+        for (Map.Entry<String, Listener> ent : enabled.entrySet()) {
+            this.registerListener(ent.getKey(), ent.getValue());
+        }
+    }
+
+    /**
+     * Replaces the listeners controlled by the configuration with the ones it
+     * now enables. Listeners registered from elsewhere are kept.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void reload() {
+        for (String name : MANAGED) {
+            Listener l = this.listeners.remove(name);
+            if (l != null) {
+                HandlerList.unregisterAll(l);
+            }
         }
+        this.register();
     }
     
     /**
      * Gets a listener by its string name. Returns null if the listener is
      * disabled.
      * 
-     * Available names: afk, death, event, online, update
+     * Available names: afk, death, event, online, stats, update
      * 
      * @since 1.4.1
      * @version 1.4.1
@@ -17,6 +17,7 @@
 package com.codelanx.playtime.listener.listeners;
 
 import com.codelanx.playtime.Playtime;
+import org.bukkit.Location;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
@@ -31,81 +32,183 @@ import org.bukkit.event.player.PlayerQuitEvent;
  *
  * @since 1.4.1
  * @author 1Rogue
- * @version 1.4.1
+ * @version 2.0.0
  */
 public class AFKListener implements Listener {
 
     private final Playtime plugin;
     private final boolean chat;
+    private final Movement movement;
+    private long moveEvents = 0;
+    private long moveNanos = 0;
 
     public AFKListener(Playtime plugin, boolean chat) {
         this.plugin = plugin;
         this.chat = chat;
+        this.movement = Movement.fromConfig(plugin.getConfigurationLoader().getString("afk.movement"));
     }
 
     /**
      * Registers the player with the AFK checker
      *
      * @since 1.2.0
-     * @versino 1.4.1
+     * @version 2.0.0
      *
      * @param e The join event
      */
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerJoin(PlayerJoinEvent e) {
-        this.plugin.getPlayerHandler().putPlayer(e.getPlayer().getName(), 0, e.getPlayer().getLocation());
+        this.plugin.getPlayerHandler().putPlayer(e.getPlayer().getUniqueId(), e.getPlayer().getName());
     }
 
     /**
      * Removes the player from the AFK checker
      *
      * @since 1.2.0
-     * @version 1.4.1
+     * @version 2.0.0
      *
      * @param e The quit event
      */
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerQuit(PlayerQuitEvent e) {
-        this.plugin.getPlayerHandler().remPlayer(e.getPlayer().getName());
+        this.plugin.getPlayerHandler().remPlayer(e.getPlayer().getUniqueId());
     }
 
     /**
-     * Sets a player as "not AFK" when they move.
+     * Sets a player as "not AFK" when they move. Movement that does not
+     * count under the configured {@link Movement} is ignored. This runs for
+     * every move packet, so it must not allocate.
      *
      * @since 1.2.0
-     * @version 1.4.1
+     * @version 2.0.0
      *
      * @param e The move event
      */
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerMove(PlayerMoveEvent e) {
-        this.plugin.getPlayerHandler().updatePlayer(e.getPlayer().getName(), false);
+        long start = System.nanoTime();
+        if (this.movement.counts(e.getFrom(), e.getTo())) {
+            this.plugin.getPlayerHandler().activity(e.getPlayer().getUniqueId());
+        }
+        this.moveNanos += System.nanoTime() - start;
+        this.moveEvents++;
+    }
+
+    /**
+     * Returns the number of move events handled. Only accurate when read from
+     * the main thread.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Move events handled
+     */
+    public long getMoveEvents() {
+        return this.moveEvents;
+    }
+
+    /**
+     * Returns the average time spent handling a move event. Only accurate
+     * when read from the main thread.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return Average cost per move event, in nanoseconds
+     */
+    public long getAverageMoveNanos() {
+        return this.moveEvents == 0 ? 0 : this.moveNanos / this.moveEvents;
     }
 
     /**
      * Sets a player as "not AFK" when they interact with something.
      *
      * @since 1.2.0
-     * @version 1.4.1
+     * @version 2.0.0
      *
      * @param e The interact event
      */
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerInteract(PlayerInteractEvent e) {
-        this.plugin.getPlayerHandler().updatePlayer(e.getPlayer().getName(), false);
+        this.plugin.getPlayerHandler().activity(e.getPlayer().getUniqueId());
     }
 
     /**
      * Sets a player as "not AFK" when they chat, if enabled.
      *
      * @since 1.4.1
-     * @version 1.4.1
+     * @version 2.0.0
      *
      * @param e Asynchronous player chat event
      */
+    @EventHandler(priority = EventPriority.NORMAL)
     public void onAsyncPlayerChat(AsyncPlayerChatEvent e) {
         if (this.chat) {
-            this.plugin.getPlayerHandler().updatePlayer(e.getPlayer().getName(), false);
+            this.plugin.getPlayerHandler().activity(e.getPlayer().getUniqueId());
+        }
+    }
+
+    /**
+     * Which kinds of movement count as activity
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    private static enum Movement {
+
+        /**
+         * Any movement, including turning the head
+         */
+        ANY,
+        /**
+         * Any change in position
+         */
+        POSITION,
+        /**
+         * Moving into a different block
+         */
+        BLOCK;
+
+        /**
+         * Checks whether a move counts as activity
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param from The location moved from
+         * @param to The location moved to
+         * @return true if the player should be considered active
+         */
+        private boolean counts(Location from, Location to) {
+            switch (this) {
+                case POSITION:
+                    return from.getX() != to.getX() || from.getY() != to.getY() || from.getZ() != to.getZ();
+                case BLOCK:
+                    return from.getBlockX() != to.getBlockX() || from.getBlockY() != to.getBlockY() || from.getBlockZ() != to.getBlockZ();
+                default:
+                    return true;
+            }
         }
+
+        /**
+         * Reads the movement setting from the configuration, defaulting to
+         * {@link #ANY}
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param value The configured value
+         * @return The matching movement type
+         */
+        private static Movement fromConfig(String value) {
+            for (Movement m : Movement.values()) {
+                if (m.name().equalsIgnoreCase(value)) {
+                    return m;
+                }
+            }
+            return ANY;
+        }
+
     }
 }
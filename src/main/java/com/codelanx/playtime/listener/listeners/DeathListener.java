@@ -17,7 +17,7 @@
 package com.codelanx.playtime.listener.listeners;
 
 import com.codelanx.playtime.Playtime;
-import com.codelanx.playtime.runnable.ResetRunnable;
+import com.codelanx.playtime.data.Timer;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
@@ -28,7 +28,7 @@ import org.bukkit.event.entity.PlayerDeathEvent;
  *
  * @since 1.4.1
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class DeathListener implements Listener {
 
@@ -42,12 +42,12 @@ public class DeathListener implements Listener {
      * Resets a player's death timer on death.
      *
      * @since 1.2.0
-     * @version 1.5.0
+     * @version 2.0.0
      *
      * @param e The death event
      */
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerDeath(PlayerDeathEvent e) {
-        this.plugin.getExecutiveManager().runAsyncTask(new ResetRunnable(this.plugin, e.getEntity().getUniqueId(), "deathtime"), 0L);
+        this.plugin.getDataManager().resetTimer(e.getEntity().getUniqueId(), Timer.DEATHTIME);
     }
 }
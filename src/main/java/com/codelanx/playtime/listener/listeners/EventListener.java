@@ -27,7 +27,7 @@ import org.bukkit.event.player.PlayerJoinEvent;
  * 
  * @since 1.4.1
  * @author 1Rogue
- * @version 1.4.1
+ * @version 2.0.0
  */
 public class EventListener implements Listener {
 
@@ -41,12 +41,12 @@ public class EventListener implements Listener {
      * Fires any login events registered by the player.
      *
      * @since 1.2.0
-     * @versino 1.4.1
+     * @version 2.0.0
      *
      * @param e The join event
      */
     @EventHandler(priority = EventPriority.NORMAL)
     public void onPlayerJoin(PlayerJoinEvent e) {
-        this.plugin.getEventHandler().fireLoginEvents(e.getPlayer().getName());
+        this.plugin.getEventHandler().fireLoginEvents(e.getPlayer().getUniqueId(), e.getPlayer().getName());
     }
 }
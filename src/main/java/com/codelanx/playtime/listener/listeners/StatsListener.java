@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.listener.listeners;
+
+import com.codelanx.playtime.Playtime;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Keeps the stats and name caches in line with the players that are online
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class StatsListener implements Listener {
+
+    private final Playtime plugin;
+
+    public StatsListener(Playtime plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Loads a player's stats into the cache upon logging in, and records the
+     * name they joined with
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param e The join event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent e) {
+        this.plugin.getDataManager().loadPlayer(e.getPlayer().getUniqueId());
+        this.plugin.getNameCache().put(e.getPlayer().getUniqueId(), e.getPlayer().getName());
+    }
+
+    /**
+     * Moves a player's stats to the offline cache upon logging out
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param e The quit event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent e) {
+        this.plugin.getDataManager().getStatsCache().unload(e.getPlayer().getUniqueId());
+    }
+}
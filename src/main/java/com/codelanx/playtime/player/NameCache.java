@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.player;
+
+import com.codelanx.playtime.Playtime;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import org.bukkit.OfflinePlayer;
+
+/**
+ * Remembers which uuid belongs to which player name, so that names given in
+ * commands or found in old rows can be resolved without asking the server or
+ * the profile endpoint again. The cache is kept in a small binary file in the
+ * plugin folder between restarts.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class NameCache {
+
+    private static final String FILE = "names.dat";
+    private static final int FORMAT = 1;
+    private final Playtime plugin;
+    private final File file;
+    private final Map<String, Profile> byName = new ConcurrentHashMap<String, Profile>();
+    private final Map<UUID, String> byUUID = new ConcurrentHashMap<UUID, String>();
+    private volatile boolean dirty = false;
+
+    public NameCache(Playtime plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), FILE);
+    }
+
+    /**
+     * Records the current name of a player. If another player held the name
+     * before, that mapping is dropped.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @param name The player's current name
+     */
+    public synchronized void put(UUID uuid, String name) {
+        if (uuid == null || name == null || name.isEmpty()) {
+            return;
+        }
+        String old = this.byUUID.put(uuid, name);
+        if (name.equals(old)) {
+            return;
+        }
+        if (old != null) {
+            Profile held = this.byName.get(old.toLowerCase());
+            if (held != null && held.uuid.equals(uuid)) {
+                this.byName.remove(old.toLowerCase());
+            }
+        }
+        Profile prev = this.byName.put(name.toLowerCase(), new Profile(uuid, name));
+        if (prev != null && !prev.uuid.equals(uuid)) {
+            this.byUUID.remove(prev.uuid, prev.name);
+        }
+        this.dirty = true;
+    }
+
+    /**
+     * Adds every name in the provided map that is not already known. Used to
+     * warm the cache from storage without overwriting newer names.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param names The names to add, keyed by uuid
+     */
+    public void putAll(Map<UUID, String> names) {
+        for (Map.Entry<UUID, String> ent : names.entrySet()) {
+            if (!this.byUUID.containsKey(ent.getKey())) {
+                this.put(ent.getKey(), ent.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the uuid of a player by name, ignoring case
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param name The name to look up
+     * @return The player's uuid, or null if the name is not cached
+     */
+    public UUID getUUID(String name) {
+        Profile p = this.byName.get(name.toLowerCase());
+        return p == null ? null : p.uuid;
+    }
+
+    /**
+     * Returns the last known name of a player
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @return The player's name, or null if the uuid is not cached
+     */
+    public String getName(UUID uuid) {
+        return this.byUUID.get(uuid);
+    }
+
+    /**
+     * Returns a name as the player last used it, so names typed in a command
+     * can be shown with the right capitalisation
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param name The name to look up
+     * @return The cached spelling of the name, or the name itself if unknown
+     */
+    public String getDisplayName(String name) {
+        Profile p = this.byName.get(name.toLowerCase());
+        return p == null ? name : p.name;
+    }
+
+    /**
+     * Returns the number of players in the cache
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The cache size
+     */
+    public int size() {
+        return this.byUUID.size();
+    }
+
+    /**
+     * Resolves a name to a uuid. Cached names complete straight away, anything
+     * else falls back to the server's player data on the provided executor
+     * and is remembered if the server knows the player.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param name The name to resolve
+     * @param executor The executor to run a lookup on
+     * @return A future completed with the uuid the server gives for the name
+     */
+    public CompletableFuture<UUID> lookup(final String name, Executor executor) {
+        UUID cached = this.getUUID(name);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return CompletableFuture.supplyAsync(new Supplier<UUID>() {
+            public UUID get() {
+                OfflinePlayer o = plugin.getServer().getOfflinePlayer(name);
+                if (o.hasPlayedBefore()) {
+                    put(o.getUniqueId(), o.getName() == null ? name : o.getName());
+                }
+                return o.getUniqueId();
+            }
+        }, executor);
+    }
+
+    /**
+     * Reads the cache file, if there is one
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void load() {
+        if (!this.file.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+            if (in.readInt() != FORMAT) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                this.put(uuid, in.readUTF());
+            }
+            this.dirty = false;
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.WARNING, "{0}", this.plugin.getDebug() >= 3 ? ex : "null");
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Writes the cache file if anything has changed since it was last read
+     * or written. The new copy is written beside the old one and moved
+     * over it, so a failed write leaves the old copy in place.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public void save() {
+        Map<UUID, String> snapshot;
+        synchronized (this) {
+            if (!this.dirty) {
+                return;
+            }
+            this.dirty = false;
+            snapshot = new HashMap<UUID, String>(this.byUUID);
+        }
+        synchronized (this.file) {
+            File tmp = new File(this.file.getParentFile(), FILE + ".tmp");
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+                out.writeInt(FORMAT);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<UUID, String> ent : snapshot.entrySet()) {
+                    out.writeLong(ent.getKey().getMostSignificantBits());
+                    out.writeLong(ent.getKey().getLeastSignificantBits());
+                    out.writeUTF(ent.getValue());
+                }
+                out.close();
+                out = null;
+                Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                this.dirty = true;
+                this.plugin.getLogger().log(Level.WARNING, "{0}", this.plugin.getDebug() >= 3 ? ex : "null");
+            } finally {
+                close(out);
+            }
+        }
+    }
+
+    /**
+     * Closes a stream, ignoring any errors
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param stream The stream to close, may be null
+     */
+    private static void close(Closeable stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException ex) {
+            // nothing left to clean up
+        }
+    }
+
+    /**
+     * A player name along with the uuid it belongs to
+     *
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
+     */
+    private static class Profile {
+
+        private final UUID uuid;
+        private final String name;
+
+        public Profile(UUID uuid, String name) {
+            this.uuid = uuid;
+            this.name = name;
+        }
+
+    }
+
+}
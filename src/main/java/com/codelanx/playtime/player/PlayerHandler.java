@@ -17,190 +17,195 @@
 package com.codelanx.playtime.player;
 
 import com.codelanx.playtime.Playtime;
+import java.util.PriorityQueue;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
-import org.bukkit.Location;
 
 /**
+ * Tracks AFK players. Activity only updates a timestamp, and timeouts are
+ * found through a queue of deadlines, so a check only ever looks at players
+ * that may have timed out rather than every online player. A player's
+ * deadline is re-queued lazily when it is reached, and an AFK player is only
+ * queued again once they become active.
  *
  * @since 1.2.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class PlayerHandler {
 
+    private static final long ACTIVITY_RESOLUTION = 1000;
     private final Playtime plugin;
     private final int interval;
     private final int timeout;
-    private final ConcurrentHashMap<String, PlaytimePlayer> players = new ConcurrentHashMap<String, PlaytimePlayer>();
+    private final long timeoutMillis;
+    private final ConcurrentHashMap<UUID, PlaytimePlayer> players = new ConcurrentHashMap<UUID, PlaytimePlayer>();
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<Deadline>();
 
     public PlayerHandler(Playtime plugin, int interval, int timeout) {
         this.plugin = plugin;
         this.interval = interval;
         this.timeout = timeout;
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeout);
     }
 
     /**
-     * Updates the AFK-start time for the provided player.
+     * Adds a player to the Plugin's tracked list of players.
      *
      * @since 1.2.0
-     * @version 1.4.1
+     * @version 2.0.0
      *
-     * @param name The relevant player's name
-     * @param time The time being AFK started
+     * @param uuid The player's uuid
+     * @param name The player's name
      */
-    public void updatePlayer(String name, int time) {
-        PlaytimePlayer temp = this.getPlayer(name);
-        if (temp != null) {
-            temp.setTime(time);
-            this.putPlayer(name, temp);
-        }
+    public void putPlayer(UUID uuid, String name) {
+        PlaytimePlayer player = new PlaytimePlayer(uuid, name, System.currentTimeMillis());
+        this.players.put(uuid, player);
+        this.schedule(player);
     }
 
     /**
-     * Updates the AFK-start location for the provided player.
+     * Takes over the players tracked by a handler that is being replaced, so
+     * their activity and AFK state survive a reload. Deadlines are queued
+     * again using this handler's timeout.
      *
-     * @since 1.2.0
-     * @version 1.4.1
+     * @since 2.0.0
+     * @version 2.0.0
      *
-     * @param name The relevant player's name
-     * @param place The place the player was at the start of being AFK
+     * @param previous The handler being replaced
      */
-    public void updatePlayer(String name, Location place) {
-        PlaytimePlayer temp = this.getPlayer(name.toLowerCase());
-        if (temp != null) {
-            temp.setSavedLocation(place);
-            this.putPlayer(name.toLowerCase(), temp);
+    public void adopt(PlayerHandler previous) {
+        for (PlaytimePlayer player : previous.players.values()) {
+            this.players.put(player.getUUID(), player);
+            synchronized (this.deadlines) {
+                player.queued = false;
+            }
+            if (!player.isAFK()) {
+                this.schedule(player);
+            }
         }
     }
 
     /**
-     * Updates the AFK-status for the provided player.
+     * Removes a player from the plugin's tracked list of players. Any queued
+     * deadline for them is dropped when it is reached.
      *
      * @since 1.2.0
-     * @version 1.4.1
+     * @version 2.0.0
      *
-     * @param name The relevant player's name
-     * @param afk Whether the player is AFK or not
+     * @param uuid The player's uuid
      */
-    public void updatePlayer(String name, boolean afk) {
-        PlaytimePlayer temp = this.getPlayer(name.toLowerCase());
-        if (temp != null) {
-            temp.setAFK(afk);
-            this.putPlayer(name.toLowerCase(), temp);
-        }
+    public void remPlayer(UUID uuid) {
+        this.players.remove(uuid);
     }
 
     /**
-     * Adds a player to the Plugin's tracked list of players.
+     * Records activity from a player, bringing them back from being AFK. An
+     * active player's timestamp is only rewritten once per second, so the
+     * many events a moving player fires are reads only.
      *
-     * @since 1.2.0
-     * @version 1.2.0
+     * @since 2.0.0
+     * @version 2.0.0
      *
-     * @param name The player name
-     * @param time The AFK-start time
-     * @param location The location when a player went AFK
+     * @param uuid The player's uuid
      */
-    public void putPlayer(String name, int time, Location location) {
-        this.putPlayer(name.toLowerCase(), new PlaytimePlayer(name.toLowerCase(), time, location));
+    public void activity(UUID uuid) {
+        PlaytimePlayer player = this.players.get(uuid);
+        if (player != null) {
+            long now = System.currentTimeMillis();
+            if (player.isAFK()) {
+                player.setLastActive(now);
+                player.setAFK(false);
+                this.schedule(player);
+            } else if (now - player.getLastActive() >= ACTIVITY_RESOLUTION) {
+                player.setLastActive(now);
+            }
+        }
     }
 
     /**
-     * Adds an PlaytimePlayer to the plugin's tracked list of players.
+     * Marks every player whose deadline has passed without activity as AFK.
+     * Players that were active since their deadline was queued are queued
+     * again with their new deadline.
      *
-     * @since 1.2.0
-     * @version 1.2.0
-     *
-     * @param name The player name
-     * @param player The PlaytimePlayer object of the player
+     * @since 2.0.0
+     * @version 2.0.0
      */
-    public void putPlayer(String name, PlaytimePlayer player) {
-        players.put(name.toLowerCase(), player);
+    public void checkDeadlines() {
+        long now = System.currentTimeMillis();
+        while (true) {
+            PlaytimePlayer player;
+            synchronized (this.deadlines) {
+                Deadline next = this.deadlines.peek();
+                if (next == null || next.time > now) {
+                    return;
+                }
+                this.deadlines.poll();
+                player = next.player;
+                player.queued = false;
+            }
+            if (this.players.get(player.getUUID()) != player) {
+                continue;
+            }
+            if (player.getLastActive() + this.timeoutMillis > now) {
+                this.schedule(player);
+                continue;
+            }
+            player.setAFK(true);
+            if (player.getLastActive() + this.timeoutMillis > now) {
+                // activity raced with us, undo
+                player.setAFK(false);
+                this.schedule(player);
+            } else if (this.plugin.getDebug() >= 2) {
+                this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("player.set-afk", player.getName()));
+            }
+        }
     }
 
     /**
-     * Removes a player from the plugin's tracked list of players
+     * Queues a player's next deadline, unless one is already queued
      *
-     * @since 1.2.0
-     * @version 1.2.0
+     * @since 2.0.0
+     * @version 2.0.0
      *
-     * @param name The player name
+     * @param player The player to queue
      */
-    public void remPlayer(String name) {
-        players.remove(name.toLowerCase());
+    private void schedule(PlaytimePlayer player) {
+        synchronized (this.deadlines) {
+            if (!player.queued) {
+                player.queued = true;
+                this.deadlines.add(new Deadline(player.getLastActive() + this.timeoutMillis, player));
+            }
+        }
     }
 
     /**
      * Gets the plugin's instance of the player
      *
      * @since 1.2.0
-     * @version 1.2.0
+     * @version 2.0.0
      *
-     * @param name The player name
-     * @return The player instance
+     * @param uuid The player's uuid
+     * @return The player instance, or null if not tracked
      */
-    public PlaytimePlayer getPlayer(String name) {
-        return players.get(name.toLowerCase());
+    public PlaytimePlayer getPlayer(UUID uuid) {
+        return this.players.get(uuid);
     }
 
     /**
      * Returns whether or not the player is AFK.
      *
      * @since 1.2.0
-     * @version 1.4.1
-     *
-     * @return AFK status
-     */
-    public boolean isAFK(String name) {
-        return this.getPlayer(name.toLowerCase()).isAFK();
-    }
-
-    /**
-     * Gets the time the player went AFK. 0 if they are not AFK.
-     *
-     * @since 1.2.0
-     * @version 1.2.0
-     *
-     * @param name The player name
-     * @return AFK Starting time for the player
-     */
-    public int checkTime(String name) {
-        return this.getPlayer(name.toLowerCase()).getTime();
-    }
-
-    /**
-     * Gets the location where the player went AFK. Returns null if they have
-     * never gone AFK.
-     *
-     * @since 1.2.0
-     * @version 1.2.0
-     *
-     * @param name The player name
-     * @return Location where a player went AFK
-     */
-    public Location checkLocation(String name) {
-        return this.getPlayer(name.toLowerCase()).getSavedLocation();
-    }
-
-    /**
-     * Increments the value for a player's AFK time.
-     *
-     * @since 1.2.0
-     * @version 1.4.1
+     * @version 2.0.0
      *
-     * @param name The username to increment time for
+     * @param uuid The player's uuid
+     * @return AFK status, false if the player is not tracked
      */
-    public void incrementTime(String name) {
-        PlaytimePlayer temp = this.getPlayer(name.toLowerCase());
-        if (temp != null) {
-            temp.setTime(this.getPlayer(name.toLowerCase()).getTime() + this.interval);
-            if (this.checkTime(name) >= this.timeout) {
-                if (this.plugin.getDebug() >= 2) {
-                    this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("player.set-afk", name));
-                }
-                this.plugin.getPlayerHandler().updatePlayer(name, true);
-            }
-        }
+    public boolean isAFK(UUID uuid) {
+        PlaytimePlayer player = this.players.get(uuid);
+        return player != null && player.isAFK();
     }
 
     /**
@@ -228,14 +233,34 @@ public class PlayerHandler {
     }
 
     /**
-     * Returns the map of all PlaytimePlayers.
+     * A point in time at which a player may have gone AFK
      *
-     * @since 1.2.0
-     * @version 1.2.0
-     *
-     * @return Map of PlaytimePlayers players
+     * @since 2.0.0
+     * @author 1Rogue
+     * @version 2.0.0
      */
-    public ConcurrentHashMap<String, PlaytimePlayer> getPlayers() {
-        return this.players;
+    private static class Deadline implements Comparable<Deadline> {
+
+        private final long time;
+        private final PlaytimePlayer player;
+
+        private Deadline(long time, PlaytimePlayer player) {
+            this.time = time;
+            this.player = player;
+        }
+
+        /**
+         * Orders deadlines from earliest to latest
+         *
+         * @since 2.0.0
+         * @version 2.0.0
+         *
+         * @param o The deadline to compare to
+         * @return The comparison result
+         */
+        public int compareTo(Deadline o) {
+            return this.time < o.time ? -1 : (this.time == o.time ? 0 : 1);
+        }
+
     }
 }
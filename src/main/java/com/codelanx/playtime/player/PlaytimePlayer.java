@@ -16,73 +16,52 @@
  */
 package com.codelanx.playtime.player;
 
-import org.bukkit.Location;
+import java.util.UUID;
 
 /**
+ * The AFK state of a single online player. Activity only ever writes a
+ * timestamp, so it is cheap enough to record on every move.
  *
  * @since 1.2.0
  * @author 1Rogue
- * @version 1.2.0
+ * @version 2.0.0
  */
 public class PlaytimePlayer {
 
-    private String name = "";
-    private int time = 0;
-    private Location location = null;
-    private boolean afk = false;
+    private final UUID uuid;
+    private final String name;
+    private volatile long lastActive;
+    private volatile boolean afk = false;
+    boolean queued = false;
 
-    public PlaytimePlayer(String name, int time, Location location) {
+    public PlaytimePlayer(UUID uuid, String name, long lastActive) {
+        this.uuid = uuid;
         this.name = name;
-        this.time = time;
-        this.location = location;
+        this.lastActive = lastActive;
     }
 
     /**
-     * Sets the player's starting AFK time.
+     * Records activity from the player
      *
-     * @since 1.2.0
-     * @version 1.2.0
-     *
-     * @param time The supplied time
-     */
-    public void setTime(int time) {
-        this.time = time;
-    }
-
-    /**
-     * Sets the player's location at the time of going AFK.
-     *
-     * @since 1.2.0
-     * @version 1.2.0
-     *
-     * @param location The saved location
-     */
-    public void setSavedLocation(Location location) {
-        this.location = location;
-    }
-
-    /**
-     * Gets the player's starting AFK time.
+     * @since 2.0.0
+     * @version 2.0.0
      *
-     * @since 1.2.0
-     * @version 1.2.0
-     *
-     * @return Starting AFK time
+     * @param time The time of the activity, in milliseconds
      */
-    public int getTime() {
-        return this.time;
+    public void setLastActive(long time) {
+        this.lastActive = time;
     }
 
     /**
-     * Gets the player's location at the time of going AFK.
+     * Gets the last time the player was active
      *
-     * @since 1.2.0
-     * @version 1.2.0
+     * @since 2.0.0
+     * @version 2.0.0
      *
-     * @return The saved location
+     * @return The time of the last activity, in milliseconds
      */
-    public Location getSavedLocation() {
-        return this.location;
+    public long getLastActive() {
+        return this.lastActive;
     }
 
     /**
@@ -109,6 +88,18 @@ public class PlaytimePlayer {
         return this.afk;
     }
 
+    /**
+     * Gets the uuid of the player.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The uuid of the player
+     */
+    public UUID getUUID() {
+        return this.uuid;
+    }
+
     /**
      * Gets the name value for the player.
      *
@@ -120,4 +111,4 @@ public class PlaytimePlayer {
     public String getName() {
         return this.name;
     }
-}
\ No newline at end of file
+}
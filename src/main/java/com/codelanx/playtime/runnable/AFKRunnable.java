@@ -17,17 +17,14 @@
 package com.codelanx.playtime.runnable;
 
 import com.codelanx.playtime.Playtime;
-import com.codelanx.playtime.player.PlaytimePlayer;
-import java.util.Map;
-import java.util.logging.Level;
-import org.bukkit.Bukkit;
-import org.bukkit.entity.Player;
+import com.codelanx.playtime.player.PlayerHandler;
 
 /**
+ * Marks players as AFK once their activity deadline has passed
  *
  * @since 1.2.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class AFKRunnable implements Runnable {
 
@@ -38,24 +35,12 @@ public class AFKRunnable implements Runnable {
     }
 
     public void run() {
-        Map<String, PlaytimePlayer> players = this.plugin.getPlayerHandler().getPlayers();
-        if (Bukkit.getOnlinePlayers().size() > 0) {
-            if (this.plugin.getDebug() >= 1) {
-                this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.afk.check"));
-            }
-            for (Player p : Bukkit.getOnlinePlayers()) {
-                if (!players.get(p.getName().toLowerCase()).isAFK() && p.getLocation().equals(players.get(p.getName().toLowerCase()).getSavedLocation())) {
-                    this.plugin.getPlayerHandler().incrementTime(p.getName());
-                    if (this.plugin.getDebug() >= 3) {
-                        this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("runnable.afk.time", p.getName()));
-                    }
-                } else if (!players.get(p.getName().toLowerCase()).isAFK()) {
-                    this.plugin.getPlayerHandler().updatePlayer(p.getName(), p.getLocation());
-                    if (this.plugin.getDebug() >= 2) {
-                        this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("runnable.afk.location", p.getName()));
-                    }
-                }
-            }
+        if (this.plugin.getDebug() >= 3) {
+            this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.afk.check"));
+        }
+        PlayerHandler handler = this.plugin.getPlayerHandler();
+        if (handler != null) {
+            handler.checkDeadlines();
         }
     }
 }
@@ -17,150 +17,67 @@
 package com.codelanx.playtime.runnable;
 
 import com.codelanx.playtime.Playtime;
-import com.codelanx.playtime.data.mysql.MySQL;
-import com.codelanx.playtime.data.sqlite.SQLite;
-import com.codelanx.playtime.data.yaml.YAML;
-import java.sql.SQLException;
+import com.codelanx.playtime.data.DataManager;
+import com.codelanx.playtime.data.Timer;
+import com.codelanx.playtime.player.PlayerHandler;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.logging.Level;
+import java.util.List;
 import org.bukkit.entity.Player;
 
 /**
+ * Adds a minute to the enabled timers of every online player that is not AFK.
+ * Minutes are only counted in memory, and are written to the database by a
+ * {@link FlushRunnable}
  *
  * @since 1.4.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class AddRunnable implements Runnable {
 
     private final Playtime plugin;
-    private final boolean afkEnabled;
-    private final ArrayList<String> timers;
 
     public AddRunnable(Playtime plugin) {
         this.plugin = plugin;
-        this.afkEnabled = this.plugin.getPlayerHandler() != null;
-        this.timers = new ArrayList<String>();
-        this.timers.add("playtime");
-        if (this.plugin.getConfigurationLoader().getBoolean("check.death-time")) {
-            this.timers.add("deathtime");
-        }
-        if (this.plugin.getConfigurationLoader().getBoolean("check.online-time")) {
-            this.timers.add("onlinetime");
-        }
     }
 
     public void run() {
-        String current = this.plugin.getDataManager().getDataHandler().getName();
-        if (current.equals("mysql")) {
-            Collection<? extends Player> players = this.plugin.getServer().getOnlinePlayers();
-            MySQL db = new MySQL();
-            StringBuilder sb = new StringBuilder("INSERT INTO `playTime` (`username`, `uuid`) VALUES ");
-            if (players.size() > 0) {
-                for (Player p : players) {
-                    if (!this.afkEnabled || !this.plugin.getPlayerHandler().isAFK(p.getName())) {
-                        sb.append("('").append(p.getName()).append("', '").append(p.getUniqueId()).append("'), ");
-                    }
-                }
-                if (sb.toString().endsWith(" VALUES ")) {
-                    if (this.plugin.getDebug() >= 1) {
-                        this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.add.none"));
-                    }
-                    return;
-                }
-                sb = new StringBuilder(sb.substring(0, sb.length() - 2));
-                sb.append(" ON DUPLICATE KEY UPDATE ");
-                for (String timer : this.timers) {
-                    sb.append("`").append(timer).append("`=`").append(timer).append("`+1, ");
-                }
-                sb = new StringBuilder(sb.substring(0, sb.length() - 2));
-                if (this.plugin.getDebug() >= 1) {
-                    this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.add.update"));
-                    if (this.plugin.getDebug() >= 2) {
-                        this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("runnable.add.query", sb.toString()));
-                    }
-                }
-            } else {
-                if (this.plugin.getDebug() >= 1) {
-                    this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.add.none"));
-                }
-                return;
+        DataManager manager = this.plugin.getDataManager();
+        //read each tick, as the handler is only made after this is scheduled,
+        //and it and the enabled timers can change on a reload
+        PlayerHandler afk = this.plugin.getPlayerHandler();
+        Timer[] timers = this.getTimers();
+        int count = 0;
+        for (Player p : this.plugin.getServer().getOnlinePlayers()) {
+            if (afk == null || !afk.isAFK(p.getUniqueId())) {
+                manager.addMinute(p.getUniqueId(), p.getName(), timers);
+                count++;
             }
-            try {
-                db.open();
-                db.update(sb.toString());
-            } catch (SQLException ex) {
-                this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? ex : "null");
-            } finally {
-                db.close();
+        }
+        if (this.plugin.getDebug() >= 1) {
+            if (count == 0) {
+                this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.add.none"));
+            } else {
+                this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.add.update", count));
             }
-        } else if (current.equals("sqlite")) {
-            Collection<? extends Player> players = this.plugin.getServer().getOnlinePlayers();
-            if (players.size() > 0) {
-                StringBuilder sb = new StringBuilder("INSERT OR IGNORE INTO `playTime` ");
-                StringBuilder sb2 = new StringBuilder("UPDATE `playTime` SET ");
-                for (String timer : this.timers) {
-                    sb2.append("`").append(timer).append("`=`").append(timer).append("`+1, ");
-                }
-                sb2 = new StringBuilder(sb2.substring(0, sb2.length() - 2));
-                sb2.append(" WHERE `uuid` IN (");
-                int i = 0;
-                for (Player p : players) {
-                    if (!this.afkEnabled || !this.plugin.getPlayerHandler().isAFK(p.getName())) {
-                        sb2.append("'").append(p.getUniqueId()).append("', ");
-                        if (i > 0) {
-                            sb.append("UNION SELECT NULL, '").append(p.getName()).append("', '").append(p.getUniqueId()).append("', 0, 0, 0 ");
-                        } else {
-                            sb.append("SELECT NULL AS 'column1', '").append(p.getName()).append("' AS 'column2', '").append(p.getUniqueId()).append("' AS 'column3', 0 AS 'column4', 0 AS 'column5', 0 AS 'column6' ");
-                            i++;
-                        }
-                    }
-                }
-                if (sb.toString().endsWith(" `playTime` ")) {
-                    if (this.plugin.getDebug() >= 1) {
-                        this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.add.none"));
-                    }
-                    return;
-                }
-                if (this.plugin.getDebug() >= 2) {
-                    this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("runnable.add.query", sb.substring(0, sb.length() - 1)));
-                    this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("runnable.add.query", sb2.substring(0, sb2.length() - 2) + ")"));
-                }
-                SQLite db = new SQLite();
-                try {
-                    db.open();
-
-                    db.update(sb.substring(0, sb.length() - 1));
-                    db.update(sb2.substring(0, sb2.length() - 2) + ")");
+        }
+    }
 
-                    if (this.plugin.getDebug() >= 1) {
-                        this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.add.update"));
-                    }
-                } catch (SQLException ex) {
-                    this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? ex : "null");
-                } finally {
-                    db.close();
-                }
-            }
-        } else if (current.equals("flatfile")) {
-            this.plugin.getLogger().log(Level.SEVERE, "{0} attempted to run YML check, which is broken!", this.getClass().getSimpleName());
-            /*YAML yaml = new YAML();
-            Player[] players = this.plugin.getServer().getOnlinePlayers();
-            for (Player p : players) {
-                if (!this.afkEnabled || !this.plugin.getPlayerHandler().isAFK(p.getName())) {
-                    for (String timer : this.timers) {
-                        yaml.incrementValue("users." + p.getName() + "." + timer);
-                    }
-                    if (this.plugin.getDebug() == 3) {
-                        this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("runnable.add.update", p.getName()));
-                    }
-                }
-            }
-            if (this.plugin.getDebug() >= 1) {
-                this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.add.update"));
+    /**
+     * Returns the timers currently enabled in the configuration
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The timers to count a minute on
+     */
+    private Timer[] getTimers() {
+        List<Timer> enabled = new ArrayList<Timer>();
+        for (Timer t : Timer.values()) {
+            if (t.isEnabled(this.plugin.getConfigurationLoader())) {
+                enabled.add(t);
             }
-            yaml.forceSave();*/
         }
+        return enabled.toArray(new Timer[enabled.size()]);
     }
 }
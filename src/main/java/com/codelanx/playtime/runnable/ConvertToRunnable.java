@@ -17,103 +17,332 @@
 package com.codelanx.playtime.runnable;
 
 import com.codelanx.playtime.Playtime;
-import com.codelanx.playtime.callable.SendMessageCallable;
+import static com.codelanx.playtime.Playtime.__;
+import com.codelanx.playtime.data.DataHandler;
 import com.codelanx.playtime.data.DataManager;
-import com.codelanx.playtime.data.mysql.MySQL;
-import com.codelanx.playtime.data.sqlite.SQLite;
+import com.codelanx.playtime.data.LegacyRecord;
+import com.codelanx.playtime.data.PlayerRecord;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
+import org.bukkit.entity.Player;
 
 /**
+ * Moves the plugin over to another data type while it keeps running. Rows are
+ * copied in chunks ordered by uuid, each while holding the lock of the
+ * {@link FlushRunnable}, and every flush after that also writes the changes of
+ * players already copied to the new data type. The old data type keeps
+ * serving reads the whole time. Once the last chunk is in, a final flush and
+ * the switch to the new data type are made under the same lock, so no minute
+ * is written to one without the other. A swap makes the switch without
+ * copying anything.
  *
  * @since 1.4.0
  * @author 1Rogue
- * @version 1.5.0
+ * @version 2.0.0
  */
 public class ConvertToRunnable implements Runnable {
 
+    private static final int BATCH_SIZE = 1000;
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(5);
     private final Playtime plugin;
     private final String[] players;
-    private final String query;
+    private final String oldType;
     private final String newType;
+    private final int rows;
+    private final boolean copy;
+    private DataManager manager;
+    private DataHandler source;
+    private DataHandler target;
+    private volatile UUID copiedTo;
+    private volatile boolean complete;
+    private volatile SQLException failure;
+    private long started;
+    private long lastReport;
 
-    public ConvertToRunnable(String newType, Playtime plugin, String query, String... players) {
+    public ConvertToRunnable(String newType, Playtime plugin, String oldType, int rows, boolean copy, String... players) {
         this.newType = newType;
         this.plugin = plugin;
-        this.query = query;
+        this.oldType = oldType;
+        this.rows = rows;
+        this.copy = copy;
         this.players = players;
     }
 
     public void run() {
-        DataManager dm = new DataManager(this.plugin, false);
-        if (this.newType.equals("mysql")) {
-            dm.select(this.newType);
-            dm.setup();
-
-            MySQL db = new MySQL();
-            try {
-                db.open();
-                db.update("TRUNCATE TABLE `playTime`");
-                db.update(this.query);
-            } catch (SQLException e) {
-                this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
-            } finally {
-                db.close();
+        this.manager = this.plugin.getDataManager();
+        try {
+            this.convert();
+        } finally {
+            this.manager.finishConversion();
+        }
+    }
+
+    /**
+     * Sets up the new data type, copies to it if converting, and switches
+     * over. Anything that goes wrong leaves the old data type in use.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    private void convert() {
+        if (this.copy && this.newType.equals("flatfile")) {
+            this.plugin.getLogger().log(Level.SEVERE, "{0} attempted to run YML check, which is broken!", this.getClass().getSimpleName());
+            return;
+        }
+        if (UUIDRunnable.isRunning()) {
+            this.notify(this.plugin.getCipher().getString("runnable.convertto.uuid-busy"));
+            return;
+        }
+        this.source = this.manager.getDataHandler();
+        this.target = this.manager.createHandler(this.newType);
+        if (this.target.getName().equals(this.oldType)) {
+            //only the configured name changes, such as swapping sqlite for flatfile
+            this.save();
+            this.notify(this.plugin.getCipher().getString("runnable.convertto.swapped", this.target.getName()));
+            return;
+        }
+        this.target.init();
+        if (!this.target.verifyFormat()) {
+            this.target.cleanup();
+            this.notify(this.plugin.getCipher().getString("runnable.convertto.error", this.oldType));
+            return;
+        }
+        this.started = System.nanoTime();
+        this.lastReport = this.started;
+        int copied = 0;
+        int legacy = 0;
+        DataHandler old;
+        try {
+            if (this.copy) {
+                this.notify(this.plugin.getCipher().getString("runnable.convertto.rows", this.rows, this.oldType, this.target.getName()));
+                copied = this.copyRows();
+                legacy = this.copyLegacy();
             }
-            this.plugin.reload();
-        } else if (this.newType.equals("sqlite")) {
-            this.plugin.getConfigurationLoader().getConfig().set("data.manager", this.newType);
-            this.plugin.getConfigurationLoader().saveConfig();
-            dm.select(this.newType);
-            dm.setup();
-
-            SQLite db = new SQLite();
-            try {
-                db.open();
-                db.update("DELETE FROM `playTime`");
-                String[] queries = this.query.split("\n");
-                for (String p : this.players) {
-                    this.plugin.getExecutiveManager().runCallable(new SendMessageCallable(p, this.plugin.getCipher().getString("runnable.convertto.rows", queries.length, getTime(queries.length))), 0L);
-                }
-                for (String s : queries) {
-                    db.update(s);
+            old = this.switchOver();
+        } catch (SQLException ex) {
+            synchronized (this.manager.getFlusher()) {
+                this.manager.setMirror(null);
+            }
+            this.target.cleanup();
+            this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? ex : "null");
+            this.notify(this.plugin.getCipher().getString("runnable.convertto.error", this.oldType));
+            return;
+        }
+        old.cleanup();
+        this.save();
+        if (this.copy) {
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - this.started));
+            this.notify(this.plugin.getCipher().getString("runnable.convertto.complete", copied, seconds, copied / seconds, this.target.getName()));
+        } else {
+            this.notify(this.plugin.getCipher().getString("runnable.convertto.swapped", this.target.getName()));
+        }
+        if (legacy > 0) {
+            this.plugin.getExecutiveManager().runAsyncTask(new UUIDRunnable(this.plugin), 0L);
+        }
+    }
+
+    /**
+     * Copies {@code playTime} a chunk at a time. No flush runs while a chunk
+     * is copied, so each change is either read with its row or mirrored once
+     * the row is in.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The number of rows copied
+     * @throws SQLException If a chunk could not be copied, a mirrored write
+     *                      failed, or the plugin was disabled
+     */
+    private int copyRows() throws SQLException {
+        this.target.clear();
+        synchronized (this.manager.getFlusher()) {
+            this.manager.setMirror(this);
+        }
+        int copied = 0;
+        while (true) {
+            this.checkRunning();
+            synchronized (this.manager.getFlusher()) {
+                List<PlayerRecord> chunk = this.source.exportPlayers(this.copiedTo, BATCH_SIZE);
+                this.target.importPlayers(chunk);
+                copied += chunk.size();
+                if (chunk.size() < BATCH_SIZE) {
+                    this.complete = true;
+                    return copied;
                 }
-            } catch (SQLException e) {
-                this.plugin.getLogger().log(Level.SEVERE, "{0}", this.plugin.getDebug() >= 3 ? e : "null");
-            } finally {
-                db.close();
+                this.copiedTo = chunk.get(chunk.size() - 1).getUUID();
             }
-            this.plugin.reload();
-            for (String p : this.players) {
-                this.plugin.getExecutiveManager().runCallable(new SendMessageCallable(p, this.plugin.getCipher().getString("runnable.convertto.complete")), 0L);
+            this.progress(copied);
+        }
+    }
+
+    /**
+     * Copies the rows still waiting on a uuid. Only the uuid migration
+     * changes them, and it is not allowed to run alongside a conversion, so
+     * they are copied without holding up flushes.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The number of rows copied
+     * @throws SQLException If the rows could not be copied
+     */
+    private int copyLegacy() throws SQLException {
+        int copied = 0;
+        int last = 0;
+        while (true) {
+            this.checkRunning();
+            List<LegacyRecord> chunk = this.source.exportLegacy(last, BATCH_SIZE);
+            this.target.importLegacy(chunk);
+            copied += chunk.size();
+            if (chunk.size() < BATCH_SIZE) {
+                return copied;
             }
-        } else if (this.newType.equals("flatfile")) {
-            this.plugin.getLogger().log(Level.SEVERE, "{0} attempted to run YML check, which is broken!", this.getClass().getSimpleName());
-            /*for (String s : this.players) {
-                this.plugin.getExecutiveManager().runCallable(new SendMessageCallable(s, this.plugin.getCipher().getString("runnable.convertto.noflat")), 0L);
-            }*/
+            last = chunk.get(chunk.size() - 1).getId();
         }
+    }
+
+    /**
+     * Writes everything still counted to the old data type, mirroring it if
+     * converting, then puts the new data type in use
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The data handler that was in use
+     * @throws SQLException If the final mirrored write failed
+     */
+    private DataHandler switchOver() throws SQLException {
+        synchronized (this.manager.getFlusher()) {
+            this.complete = true;
+            this.manager.flush();
+            this.checkRunning();
+            this.manager.setMirror(null);
+            return this.manager.cutover(this.target);
+        }
+    }
+
+    /**
+     * Returns whether a player's row has been copied, so their changes must
+     * be written to the new data type as well. Rows are copied in the order
+     * of their raw uuid bytes, as both databases sort them.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param uuid The player's uuid
+     * @return true if the player has been copied
+     */
+    public boolean isCopied(UUID uuid) {
+        if (this.complete) {
+            return true;
+        }
+        UUID last = this.copiedTo;
+        if (last == null) {
+            return false;
+        }
+        int cmp = Long.compareUnsigned(uuid.getMostSignificantBits(), last.getMostSignificantBits());
+        if (cmp == 0) {
+            cmp = Long.compareUnsigned(uuid.getLeastSignificantBits(), last.getLeastSignificantBits());
+        }
+        return cmp <= 0;
+    }
+
+    /**
+     * Returns the data type being converted to
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The new data handler
+     */
+    public DataHandler getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Cancels the conversion after a mirrored write failed. Called by the
+     * flusher while it holds its lock.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param ex The cause of the failure
+     */
+    public void abort(SQLException ex) {
+        this.failure = ex;
+        this.manager.setMirror(null);
+        this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("runnable.convertto.mirror-error", this.target.getName()));
+    }
+
+    /**
+     * Stops the conversion if a mirrored write failed or the plugin is being
+     * disabled
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @throws SQLException If the conversion should stop
+     */
+    private void checkRunning() throws SQLException {
+        if (this.failure != null) {
+            throw new SQLException("Could not write to " + this.target.getName() + " during the conversion", this.failure);
+        }
+        if (!this.plugin.isEnabled() || Thread.currentThread().isInterrupted()) {
+            throw new SQLException("The plugin was disabled during the conversion");
+        }
+    }
+
+    /**
+     * Reports progress if enough time has passed since the last report
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param copied The number of rows copied so far
+     */
+    private void progress(int copied) {
+        long now = System.nanoTime();
+        if (now - this.lastReport >= PROGRESS_INTERVAL) {
+            this.lastReport = now;
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(now - this.started));
+            this.notify(this.plugin.getCipher().getString("runnable.convertto.progress",
+                    copied, this.rows, this.rows > 0 ? Math.min(100, (copied * 100L) / this.rows) : 100, copied / seconds));
+        }
+    }
+
+    /**
+     * Stores the new data type in the configuration
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    private void save() {
         this.plugin.getConfigurationLoader().getConfig().set("data.manager", this.newType);
         this.plugin.getConfigurationLoader().saveConfig();
-        this.plugin.setBusy(false);
     }
 
     /**
-     * Returns an estimation of how long SQLite conversion will take based on
-     * the number of rows required to add. The converter uses individual INSERT
-     * statements for each row, which is unfortunate due to SQLite's limitations
-     * on multiple values within inserts or union selects.
+     * Sends a message to the console and any players watching the conversion
      *
-     * @since 1.4.0
-     * @version 1.4.1
+     * @since 2.0.0
+     * @version 2.0.0
      *
-     * @param rows The number of rows to evaluate
-     * @return The estimated time as a readable string
+     * @param message The message to send
      */
-    private String getTime(int rows) {
-        long time = Math.round(rows / (369 + ((2 / 3) - 0.2)));
-        long seconds = time % 60;
-        long minutes = time / 60;
-        return ((minutes >= 1) ? minutes + " " + ((minutes != 1) ? this.plugin.getCipher().getString("variables.minutes") : this.plugin.getCipher().getString("variables.minute")) + " " : "") + seconds + " " + ((seconds != 1) ? this.plugin.getCipher().getString("variables.seconds") : this.plugin.getCipher().getString("variables.second")) + ".";
+    private void notify(final String message) {
+        this.plugin.getLogger().info(message);
+        this.plugin.getExecutiveManager().getMainThreadExecutor().execute(new Runnable() {
+            public void run() {
+                for (String name : players) {
+                    Player p = plugin.getServer().getPlayerExact(name);
+                    if (p != null) {
+                        p.sendMessage(__(message));
+                    }
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2013 Spencer Alderman
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.codelanx.playtime.runnable;
+
+import com.codelanx.playtime.Playtime;
+import com.codelanx.playtime.data.DataHandler;
+import com.codelanx.playtime.data.ResetBuffer;
+import com.codelanx.playtime.data.TimeAccumulator;
+import com.codelanx.playtime.data.TimeAccumulator.Delta;
+import com.codelanx.playtime.data.Timer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Writes the resets held in a {@link ResetBuffer} and the minutes held in a
+ * {@link TimeAccumulator} to the database. Each batch of players is written
+ * in its own transaction, and anything that fails is handed back to be
+ * retried on the next flush. While a {@link ConvertToRunnable} is copying to
+ * another data type, whatever is written for players it has already copied is
+ * written there as well.
+ *
+ * @since 2.0.0
+ * @author 1Rogue
+ * @version 2.0.0
+ */
+public class FlushRunnable implements Runnable {
+
+    private final Playtime plugin;
+    private final TimeAccumulator accumulator;
+    private final ResetBuffer resets;
+    private final int batchSize;
+
+    public FlushRunnable(Playtime plugin, TimeAccumulator accumulator, ResetBuffer resets) {
+        this.plugin = plugin;
+        this.accumulator = accumulator;
+        this.resets = resets;
+        int size = this.plugin.getConfigurationLoader().getInt("data.flush.batch-size");
+        this.batchSize = size > 0 ? size : 500;
+    }
+
+    /**
+     * Flushes every pending reset and delta. Resets are written first, so a
+     * player's minutes counted since their reset are not wiped by it. Only one
+     * flush runs at a time, so a flush made on shutdown waits for any
+     * scheduled flush already in progress.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     */
+    public synchronized void run() {
+        final Map<Timer, Set<UUID>> reset;
+        final List<Delta> deltas;
+        synchronized (this.resets) {
+            reset = this.resets.drain();
+            deltas = this.accumulator.drain();
+        }
+        int resetCount = ResetBuffer.count(reset);
+        if (deltas.isEmpty() && resetCount == 0) {
+            return;
+        }
+        int done = this.flush(this.plugin.getDataManager().getDataHandler(), reset, deltas);
+        ConvertToRunnable mirror = this.plugin.getDataManager().getMirror();
+        if (mirror != null && done >= 0) {
+            this.mirror(mirror, reset, deltas.subList(0, done));
+        }
+        if (this.plugin.getDebug() >= 1) {
+            if (done >= 0 && resetCount > 0) {
+                this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.flush.reset", resetCount));
+            }
+            if (done > 0) {
+                this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.flush.complete", done));
+            }
+        }
+    }
+
+    /**
+     * Writes what was just flushed for players a conversion has already
+     * copied to the data type being converted to. Players it has not reached
+     * yet are left for the copy, which will read them with these changes in
+     * place. If the write fails, the conversion is cancelled rather than
+     * retried, as the data type in use already has the changes.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param mirror The running conversion
+     * @param reset The resets that were written
+     * @param deltas The deltas that were written
+     */
+    private void mirror(ConvertToRunnable mirror, Map<Timer, Set<UUID>> reset, List<Delta> deltas) {
+        Map<Timer, Set<UUID>> copiedReset = new EnumMap<Timer, Set<UUID>>(Timer.class);
+        for (Map.Entry<Timer, Set<UUID>> ent : reset.entrySet()) {
+            Set<UUID> copied = new HashSet<UUID>();
+            for (UUID uuid : ent.getValue()) {
+                if (mirror.isCopied(uuid)) {
+                    copied.add(uuid);
+                }
+            }
+            copiedReset.put(ent.getKey(), copied);
+        }
+        List<Delta> copiedDeltas = new ArrayList<Delta>();
+        for (Delta d : deltas) {
+            if (mirror.isCopied(d.getUUID())) {
+                copiedDeltas.add(d);
+            }
+        }
+        try {
+            DataHandler target = mirror.getTarget();
+            target.reset(copiedReset);
+            for (int i = 0; i < copiedDeltas.size(); i += this.batchSize) {
+                target.write(copiedDeltas.subList(i, Math.min(i + this.batchSize, copiedDeltas.size())));
+            }
+        } catch (SQLException ex) {
+            mirror.abort(ex);
+        }
+    }
+
+    /**
+     * Writes the resets, then the deltas in batches. Anything that could not
+     * be written is handed back to be retried.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param data The data type to write to
+     * @param reset The players to reset, grouped by timer
+     * @param deltas The deltas to write
+     * @return The number of deltas written, or -1 if the resets failed
+     */
+    private int flush(DataHandler data, Map<Timer, Set<UUID>> reset, List<Delta> deltas) {
+        try {
+            data.reset(reset);
+        } catch (SQLException ex) {
+            this.fail(reset, deltas, ex);
+            return -1;
+        }
+        int done = 0;
+        try {
+            while (done < deltas.size()) {
+                int end = Math.min(done + this.batchSize, deltas.size());
+                data.write(deltas.subList(done, end));
+                done = end;
+            }
+        } catch (SQLException ex) {
+            this.fail(null, deltas.subList(done, deltas.size()), ex);
+        }
+        return done;
+    }
+
+    /**
+     * Hands resets and deltas that could not be written back to be retried.
+     * Both are put back under the same lock a reset is queued with, so a
+     * reset made since they were drained is not undone by the minutes counted
+     * before it.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param reset The unwritten resets, or null if they were written
+     * @param failed The unwritten deltas
+     * @param ex The cause of the failure
+     */
+    private void fail(Map<Timer, Set<UUID>> reset, List<Delta> failed, SQLException ex) {
+        synchronized (this.resets) {
+            //checked before the failed resets go back, as those came before the deltas
+            this.accumulator.restore(failed, this.resets);
+            if (reset != null) {
+                this.resets.restore(reset);
+            }
+        }
+        if (reset != null) {
+            this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("runnable.flush.reset-error", ResetBuffer.count(reset)));
+        }
+        this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("runnable.flush.error", failed.size()), this.plugin.getDebug() >= 3 ? ex : "");
+    }
+
+}
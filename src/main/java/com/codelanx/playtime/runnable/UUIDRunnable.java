@@ -18,159 +18,261 @@ package com.codelanx.playtime.runnable;
 
 import com.codelanx.playtime.Playtime;
 import com.codelanx.playtime.callable.UUIDFetcher;
-import com.codelanx.playtime.data.sqlite.SQLite;
+import com.codelanx.playtime.config.ConfigurationLoader;
+import com.codelanx.playtime.data.DataHandler;
+import com.codelanx.playtime.data.LegacyRecord;
+import com.codelanx.playtime.executables.TokenBucket;
+import com.codelanx.playtime.player.NameCache;
 import java.io.File;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
-import java.util.logging.Logger;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.file.YamlConfiguration;
 
 /**
- * Class description for {@link UUIDRunnable}
+ * Moves every row still waiting on a uuid out of the legacy table and into
+ * {@code playTime}. Rows are read a page at a time and split into batches,
+ * and each batch is resolved on its own thread: first from the
+ * {@link NameCache}, then the server's own player data, then the profile
+ * endpoint for any names left over, with requests limited by a shared
+ * {@link TokenBucket}. Batches are written in order as they finish, and the
+ * id of the last row moved before any that could not be found is saved, so a
+ * restart carries on from there without skipping rows still waiting.
  *
  * @since 1.0.0
  * @author 1Rogue
- * @version 1.0.0
+ * @version 2.0.0
  */
 public class UUIDRunnable implements Runnable {
 
+    private static final String CHECKPOINT = "uuid-checkpoint.yml";
+    private static final int READ_SIZE = 1000;
+    private static final AtomicBoolean RUNNING = new AtomicBoolean();
     private final Playtime plugin;
+    private final File checkpoint;
+    private final String endpoint;
+    private final int threads;
+    private final TokenBucket limiter;
 
     public UUIDRunnable(Playtime plugin) {
         this.plugin = plugin;
+        this.checkpoint = new File(plugin.getDataFolder(), CHECKPOINT);
+        ConfigurationLoader config = plugin.getConfigurationLoader();
+        String url = config.getString("uuid.endpoint");
+        this.endpoint = url == null || url.isEmpty() ? UUIDFetcher.PROFILE_URL : url;
+        int count = config.getInt("uuid.threads");
+        this.threads = count > 0 ? count : 4;
+        double rate = config.getDouble("uuid.requests-per-second");
+        int burst = config.getInt("uuid.burst");
+        this.limiter = new TokenBucket(rate > 0 ? rate : 1, burst > 0 ? burst : 10);
     }
 
+    /**
+     * Migrates any legacy rows in the database in use
+     *
+     * @since 1.0.0
+     * @version 2.0.0
+     */
     @Override
     public void run() {
-        List<String> names = new LinkedList<String>();
-        String type = this.plugin.getDataManager().getDataHandler().getName();
-        if (type.equalsIgnoreCase("mysql")) {
-            MySQL db = new MySQL(this.plugin);
-            try {
-                db.open();
-                ResultSet r = db.query("SELECT `username` FROM `playTime` WHERE `uuid`=''");
-                while (r.next()) {
-                    names.add(r.getString("username"));
+        if (!RUNNING.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.migrate(this.plugin.getDataManager().getDataHandler());
+        } catch (SQLException ex) {
+            this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("runnable.uuid.error"), this.plugin.getDebug() >= 3 ? ex : "");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            RUNNING.set(false);
+        }
+    }
+
+    /**
+     * Returns whether legacy rows are being migrated. Their rows are written
+     * outside of the flusher, so the data type cannot be changed meanwhile.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return true if a migration is running
+     */
+    public static boolean isRunning() {
+        return RUNNING.get();
+    }
+
+    /**
+     * Resolves and writes every legacy row past the checkpoint, a page at a
+     * time. Each page is resolved with at most the configured number of
+     * lookups running at once, and written before the next page is read, so
+     * only one page is ever held in memory. No connection is held while
+     * waiting on lookups; each batch borrows one to be written.
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param data The data type in use
+     * @throws SQLException If the rows could not be read or written
+     * @throws InterruptedException If interrupted while waiting on lookups
+     */
+    private void migrate(DataHandler data) throws SQLException, InterruptedException {
+        int after = this.readCheckpoint();
+        List<LegacyRecord> page = data.exportLegacy(after, READ_SIZE);
+        if (page.isEmpty()) {
+            return;
+        }
+        this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.uuid.start"));
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        int found = 0;
+        int seen = 0;
+        //rows that are not found stay in the legacy table, so the checkpoint
+        //stops before the first of them and a later run looks them up again
+        boolean skipped = false;
+        try {
+            while (!page.isEmpty()) {
+                List<Future<Map<String, UUID>>> batches = new ArrayList<Future<Map<String, UUID>>>();
+                for (int i = 0; i < page.size(); i += UUIDFetcher.PROFILES_PER_REQUEST) {
+                    final List<String> batch = new ArrayList<String>();
+                    for (LegacyRecord r : page.subList(i, Math.min(i + UUIDFetcher.PROFILES_PER_REQUEST, page.size()))) {
+                        batch.add(r.getName());
+                    }
+                    batches.add(pool.submit(new Callable<Map<String, UUID>>() {
+                        public Map<String, UUID> call() throws Exception {
+                            return resolve(batch);
+                        }
+                    }));
                 }
-            } catch (SQLException ex) {
-                return;
-            } finally {
-                db.close();
-            }
-        } else if (type.equalsIgnoreCase("sqlite")) {
-            SQLite db = new SQLite(this.plugin);
-            try {
-                db.open();
-                ResultSet r = db.query("SELECT `username` FROM `playTime` WHERE `uuid`=''");
-                while (r.next()) {
-                    names.add(r.getString("username"));
+                for (int b = 0; b < batches.size(); b++) {
+                    Map<String, UUID> resolved;
+                    try {
+                        resolved = batches.get(b).get();
+                    } catch (ExecutionException ex) {
+                        //stop at the first failed batch, so the checkpoint never skips it
+                        this.plugin.getLogger().log(Level.SEVERE, this.plugin.getCipher().getString("runnable.uuid.error"), this.plugin.getDebug() >= 3 ? ex.getCause() : "");
+                        return;
+                    }
+                    int first = b * UUIDFetcher.PROFILES_PER_REQUEST;
+                    List<LegacyRecord> rows = page.subList(first, Math.min(first + UUIDFetcher.PROFILES_PER_REQUEST, page.size()));
+                    found += data.moveLegacy(resolved, rows);
+                    seen += rows.size();
+                    int moved = -1;
+                    for (LegacyRecord r : rows) {
+                        if (skipped || !resolved.containsKey(r.getName())) {
+                            skipped = true;
+                            break;
+                        }
+                        moved = r.getId();
+                    }
+                    if (moved >= 0) {
+                        this.writeCheckpoint(moved);
+                    }
+                    if (this.plugin.getDebug() >= 1) {
+                        this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.uuid.progress", seen));
+                    }
                 }
-            } catch (SQLException ex) {
-
-            } finally {
-                db.close();
+                if (page.size() < READ_SIZE) {
+                    break;
+                }
+                page = data.exportLegacy(page.get(page.size() - 1).getId(), READ_SIZE);
             }
-        } else {
-            //wot
-            return;
+            this.plugin.getLogger().info(this.plugin.getCipher().getString("runnable.uuid.complete", found, seen));
+            this.plugin.getNameCache().save();
+        } finally {
+            pool.shutdownNow();
         }
-        Map<String, UUID> converted = new HashMap<String, UUID>();
+    }
 
-        for (Iterator<String> itr = names.iterator(); itr.hasNext();) {
-            String name = itr.next();
+    /**
+     * Resolves a batch of names, using the name cache or the server's own
+     * player data where it can and the profile endpoint for the rest
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param batch The names to resolve
+     * @return The uuids that were found, keyed by name
+     * @throws Exception If the profile lookup failed
+     */
+    private Map<String, UUID> resolve(List<String> batch) throws Exception {
+        Map<String, UUID> back = new HashMap<String, UUID>();
+        List<String> remote = new ArrayList<String>();
+        NameCache names = this.plugin.getNameCache();
+        for (String name : batch) {
+            UUID cached = names.getUUID(name);
+            if (cached != null) {
+                back.put(name, cached);
+                continue;
+            }
             OfflinePlayer p = Bukkit.getOfflinePlayer(name);
             if (p.hasPlayedBefore()) {
-                converted.put(name, p.getUniqueId());
-                itr.remove();
+                back.put(name, p.getUniqueId());
+                names.put(p.getUniqueId(), name);
+            } else {
+                remote.add(name);
             }
         }
-        UUIDFetcher uids = new UUIDFetcher(names);
-        try {
-            converted.putAll(uids.call());
-        } catch (Exception ex) {
-            Logger.getLogger(UUIDRunnable.class.getName()).log(Level.SEVERE, null, ex);
-        }
-        if (type.equalsIgnoreCase("mysql")) {
-            MySQL db = new MySQL(this.plugin);
-            try {
-                db.open();
-                db.getConnection().setAutoCommit(false);
-                PreparedStatement ps = db.getConnection().prepareStatement("UPDATE `playTime` SET `uuid`=? WHERE `username`=?");
-                Entry<String, UUID> ent;
-                for (Iterator<Entry<String, UUID>> itr = converted.entrySet().iterator(); itr.hasNext();) {
-                    for (int i = 0; i < 1000; i++) {
-                        ent = itr.next();
-                        ps.setString(1, ent.getKey());
-                        ps.setString(2, ent.getValue().toString());
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
-                    db.getConnection().commit();
-                }
-                db.getConnection().setAutoCommit(true);
-            } catch (SQLException ex) {
-                return;
-            } finally {
-                db.close();
-            }
-        } else if (type.equalsIgnoreCase("sqlite")) {
-            SQLite db = new SQLite(this.plugin);
-            try {
-                db.open();
-                db.getConnection().setAutoCommit(false);
-                PreparedStatement ps = db.getConnection().prepareStatement("UPDATE `playTime` SET `uuid`=? WHERE `username`=?");
-                Entry<String, UUID> ent;
-                for (Iterator<Entry<String, UUID>> itr = converted.entrySet().iterator(); itr.hasNext();) {
-                    for (int i = 0; i < 1000; i++) {
-                        ent = itr.next();
-                        ps.setString(1, ent.getKey());
-                        ps.setString(2, ent.getValue().toString());
-                        ps.addBatch();
+        if (!remote.isEmpty()) {
+            this.limiter.acquire();
+            Map<String, UUID> fetched = UUIDFetcher.fetch(this.endpoint, remote);
+            for (String name : remote) {
+                //the endpoint answers with the name's current capitalisation
+                for (Map.Entry<String, UUID> ent : fetched.entrySet()) {
+                    if (ent.getKey().equalsIgnoreCase(name)) {
+                        back.put(name, ent.getValue());
+                        names.put(ent.getValue(), ent.getKey());
+                        break;
                     }
-                    ps.executeBatch();
-                    db.getConnection().commit();
                 }
-                db.getConnection().setAutoCommit(true);
-            } catch (SQLException ex) {
-                return;
-            } finally {
-                db.close();
             }
         }
+        return back;
     }
 
-    private class MySQL extends com.codelanx.playtime.data.mysql.MySQL {
-
-        public MySQL(Playtime... plugins) {
-            super(plugins);
+    /**
+     * Reads the id of the last row a previous run got through
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @return The last migrated row id, or 0 to start from the beginning
+     */
+    private int readCheckpoint() {
+        if (!this.checkpoint.exists()) {
+            return 0;
         }
+        return YamlConfiguration.loadConfiguration(this.checkpoint).getInt("last-id", 0);
+    }
 
-        @Override
-        public Connection open() throws SQLException {
-            Properties connectionProps = new Properties();
-            connectionProps.put("user", USER);
-            connectionProps.put("password", PASS);
-
-            this.con = DriverManager.getConnection("jdbc:mysql://" + HOST + ":" + PORT + "/" + DATABASE + "?useServerPrepStmts=false&rewriteBatchedStatements=true", connectionProps);
-            if (this.plugin.getDebug() >= 2) {
-                this.plugin.getLogger().log(Level.INFO, this.plugin.getCipher().getString("data.mysql.instance.open", ++connections));
-            }
-            return this.con;
+    /**
+     * Saves the id of the last row that has been migrated
+     *
+     * @since 2.0.0
+     * @version 2.0.0
+     *
+     * @param id The last migrated row id
+     */
+    private void writeCheckpoint(int id) {
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("last-id", id);
+        try {
+            yaml.save(this.checkpoint);
+        } catch (IOException ex) {
+            this.plugin.getLogger().log(Level.WARNING, "{0}", this.plugin.getDebug() >= 3 ? ex : "null");
         }
-
     }
 
 }
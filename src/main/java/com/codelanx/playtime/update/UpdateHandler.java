@@ -68,15 +68,15 @@ public class UpdateHandler {
     }
     
     /**
-     * Runs an update check. Should only be called once (have not made a good work-around yet)
+     * Runs an update check off the server thread. Should only be called once (have not made a good work-around yet)
      * 
      * @since 1.4.5
-     * @version 1.4.5
+     * @version 2.0.0
      */
     public void runCheck() {
         UpdateRunnable ur = new UpdateRunnable(this.plugin, choice, this.id, this.file);
         ur.setDebug(this.debug);
-        this.plugin.getServer().getScheduler().runTaskLater(this.plugin,
+        this.plugin.getServer().getScheduler().runTaskLaterAsynchronously(this.plugin,
                 ur,
                 10L);
     }
@@ -169,10 +169,11 @@ class UpdateRunnable extends UpdateHandler implements Runnable {
     }
 
     /**
-     * Runs the update process
+     * Runs the update process, then handles the result back on the server
+     * thread
      *
      * @since 1.4.5
-     * @version 1.5.0
+     * @version 2.0.0
      */
     public void run() {
         boolean current = false;
@@ -188,7 +189,11 @@ class UpdateRunnable extends UpdateHandler implements Runnable {
                 }
             }
         }
-        this.handleUpdate(this.result);
+        this.plugin.getServer().getScheduler().runTask(this.plugin, new Runnable() {
+            public void run() {
+                handleUpdate(result);
+            }
+        });
     }
 
     /**